@@ -0,0 +1,121 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares rows per second of the per-row CrimeLab writes against the
+ * transactional bulk API. Results are written to logcat under "CrimeLabBench".
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeLabBulkBenchmark {
+    private static final String TAG = "CrimeLabBench";
+    private static final String DATABASE_NAME = "crimeBench.db";
+    private static final int ROWS = 2000;
+
+    private Context mContext;
+    private CrimeBaseHelper mHelper;
+    private CrimeLab mCrimeLab;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new CrimeBaseHelper(mContext, DATABASE_NAME);
+        SQLiteDatabase database = mHelper.getWritableDatabase();
+        mCrimeLab = new CrimeLab(mContext, database);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void bulkInsertIsFasterThanPerRowInsert() {
+        List<Crime> perRow = newCrimes(ROWS);
+        long start = System.nanoTime();
+        for (Crime crime : perRow) {
+            mCrimeLab.addCrime(crime);
+        }
+        double perRowRate = rowsPerSecond(ROWS, System.nanoTime() - start);
+
+        List<Crime> bulk = newCrimes(ROWS);
+        start = System.nanoTime();
+        mCrimeLab.addCrimes(bulk);
+        double bulkRate = rowsPerSecond(ROWS, System.nanoTime() - start);
+
+        Log.i(TAG, String.format("insert: per-row %.0f rows/s, bulk %.0f rows/s", perRowRate, bulkRate));
+        assertEquals(2 * ROWS, mCrimeLab.getCrimes().size());
+        assertTrue(bulkRate > perRowRate);
+    }
+
+    @Test
+    public void bulkUpdateIsFasterThanPerRowUpdate() {
+        List<Crime> crimes = newCrimes(ROWS);
+        mCrimeLab.addCrimes(crimes);
+
+        long start = System.nanoTime();
+        for (Crime crime : crimes) {
+            crime.setSolved(!crime.isSolved());
+            mCrimeLab.updateCrime(crime);
+        }
+        double perRowRate = rowsPerSecond(ROWS, System.nanoTime() - start);
+
+        for (Crime crime : crimes) {
+            crime.setSolved(!crime.isSolved());
+        }
+        start = System.nanoTime();
+        mCrimeLab.updateCrimes(crimes);
+        double bulkRate = rowsPerSecond(ROWS, System.nanoTime() - start);
+
+        Log.i(TAG, String.format("update: per-row %.0f rows/s, bulk %.0f rows/s", perRowRate, bulkRate));
+        Crime first = mCrimeLab.getCrime(crimes.get(0).getId());
+        assertEquals(crimes.get(0).isSolved(), first.isSolved());
+        assertTrue(bulkRate > perRowRate);
+    }
+
+    @Test
+    public void bulkDeleteRemovesAllRows() {
+        List<Crime> crimes = newCrimes(ROWS);
+        mCrimeLab.addCrimes(crimes);
+
+        long start = System.nanoTime();
+        mCrimeLab.deleteCrimes(crimes);
+        double bulkRate = rowsPerSecond(ROWS, System.nanoTime() - start);
+
+        Log.i(TAG, String.format("delete: bulk %.0f rows/s", bulkRate));
+        assertTrue(mCrimeLab.getCrimes().isEmpty());
+    }
+
+    private static List<Crime> newCrimes(int count) {
+        List<Crime> crimes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Crime crime = new Crime();
+            crime.setTitle("Benchmark crime " + i);
+            crime.setSolved(i % 3 == 0);
+            crime.setSuspect("Suspect " + (i % 20));
+            crimes.add(crime);
+        }
+        return crimes;
+    }
+
+    private static double rowsPerSecond(int rows, long elapsedNanos) {
+        return rows * 1_000_000_000.0 / elapsedNanos;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * The app's CrimeLab is created once however many threads race for it, and a
+ * cold start opens the database, answers the first list query and only then
+ * seeds the sample crimes. Phase timings are logged under "CrimeStartup".
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeLabStartupTest {
+    private static final int THREADS = 8;
+    private static final String DATABASE_NAME = "crimeStartup.db";
+
+    @Test
+    public void getReturnsOneInstanceAcrossThreads() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        // CrimeApplication has already made the app's instance; race on an empty holder
+        CrimeLab appCrimeLab = CrimeLab.swapInstance(null);
+        try {
+            List<Future<CrimeLab>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Callable<CrimeLab> get = () -> {
+                    start.await();
+                    return CrimeLab.get(context);
+                };
+                results.add(executor.submit(get));
+            }
+            start.countDown();
+            CrimeLab expected = CrimeLab.get(context);
+            assertNotSame(appCrimeLab, expected);
+            for (Future<CrimeLab> result : results) {
+                assertSame(expected, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+            CrimeLab.swapInstance(appCrimeLab);
+        }
+    }
+
+    @Test
+    public void firstQueryRunsBetweenOpenAndSeed() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // Lets the app's own warm-up finish, so only the scratch CrimeLab's phases are seen
+        CrimeLab.get(context).getStats();
+        context.deleteDatabase(DATABASE_NAME);
+        CrimeBaseHelper helper = new CrimeBaseHelper(context, DATABASE_NAME);
+        List<String> phases = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch seeded = new CountDownLatch(1);
+        StartupTrace.setListener(section -> {
+            phases.add(section);
+            if (StartupTrace.SEED.equals(section)) {
+                seeded.countDown();
+            }
+        });
+        try {
+            CrimeLab crimeLab = new CrimeLab(context, helper);
+            crimeLab.queueOpen();
+            CrimePage page = crimeLab.getCrimePageAsync(CrimeQuery.DEFAULT, null, 10, null)
+                    .get(30, TimeUnit.SECONDS);
+            // The database starts empty, so an empty page was read before the seed rows went in
+            assertEquals(0, page.size());
+            assertTrue(seeded.await(30, TimeUnit.SECONDS));
+            assertTrue(crimeLab.getStats().getTotal() > 0);
+
+            // Creating the schema is part of the open and ends first
+            assertEquals(Arrays.asList(StartupTrace.MIGRATE, StartupTrace.OPEN,
+                    StartupTrace.FIRST_QUERY, StartupTrace.SEED), phases);
+        } finally {
+            StartupTrace.setListener(null);
+            helper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+}
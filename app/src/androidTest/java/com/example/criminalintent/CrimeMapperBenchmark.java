@@ -0,0 +1,168 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Time and bytes allocated to map 10k rows with the old SELECT * mapper that
+ * looked up every column by name, against projected cursors with cached
+ * ordinals. Results are written to logcat under "CrimeMapperBench". No run
+ * has been recorded yet: numbers belong here once it has run on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeMapperBenchmark {
+    private static final String TAG = "CrimeMapperBench";
+    private static final String DATABASE_NAME = "crimeMapperBench.db";
+    private static final int ROWS = 10_000;
+    private static final int RUNS = 5;
+
+    private Context mContext;
+    private CrimeBaseHelper mHelper;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new CrimeBaseHelper(mContext, DATABASE_NAME);
+        mDatabase = mHelper.getWritableDatabase();
+
+        List<Crime> crimes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Crime crime = new Crime();
+            crime.setTitle("Mapper crime " + i);
+            crime.setSolved(i % 2 == 0);
+            crime.setSuspect("Suspect " + (i % 50));
+            crimes.add(crime);
+        }
+        new CrimeLab(mContext, mDatabase).addCrimes(crimes);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void compareMappers() {
+        Result legacy = measure(() -> {
+            Cursor cursor = mDatabase.query(CrimeTable.NAME, null, null, null, null, null, null);
+            try {
+                int count = 0;
+                while (cursor.moveToNext()) {
+                    legacyGetCrime(cursor);
+                    count++;
+                }
+                return count;
+            } finally {
+                cursor.close();
+            }
+        });
+        Result projected = measure(() -> {
+            CrimeDataWrapper wrapper = new CrimeDataWrapper(mDatabase.query(CrimeTable.NAME,
+                    CrimeTable.CRIME_COLUMNS, null, null, null, null, null));
+            try {
+                int count = 0;
+                while (wrapper.moveToNext()) {
+                    wrapper.getCrime();
+                    count++;
+                }
+                return count;
+            } finally {
+                wrapper.close();
+            }
+        });
+        Result summary = measure(() -> {
+            CrimeDataWrapper wrapper = new CrimeDataWrapper(mDatabase.query(CrimeTable.NAME,
+                    CrimeTable.SUMMARY_COLUMNS, null, null, null, null, null));
+            try {
+                int count = 0;
+                while (wrapper.moveToNext()) {
+                    wrapper.getCrimeSummary();
+                    count++;
+                }
+                return count;
+            } finally {
+                wrapper.close();
+            }
+        });
+
+        Log.i(TAG, "legacy Crime:    " + legacy);
+        Log.i(TAG, "projected Crime: " + projected);
+        Log.i(TAG, "CrimeSummary:    " + summary);
+        assertEquals(ROWS, legacy.mRows);
+        assertEquals(ROWS, summary.mRows);
+        assertTrue(summary.mBytes < legacy.mBytes);
+    }
+
+    // The mapper as it was before projections: five lookups by name on every row
+    private static Crime legacyGetCrime(Cursor cursor) {
+        byte[] uuid = cursor.getBlob(cursor.getColumnIndex(CrimeTable.Cols.UUID));
+        String title = cursor.getString(cursor.getColumnIndex(CrimeTable.Cols.TITLE));
+        long date = cursor.getLong(cursor.getColumnIndex(CrimeTable.Cols.DATE));
+        int isSolved = cursor.getInt(cursor.getColumnIndex(CrimeTable.Cols.SOLVED));
+        String suspect = cursor.getString(cursor.getColumnIndex(CrimeTable.Cols.SUSPECT));
+
+        Crime crime = new Crime(UuidBytes.toUuid(uuid));
+        crime.setTitle(title);
+        crime.setDate(new Date(date));
+        crime.setSolved(isSolved != 0);
+        crime.setSuspect(suspect);
+        return crime;
+    }
+
+    private interface Run {
+        int run();
+    }
+
+    private static Result measure(Run run) {
+        run.run(); // warm-up
+
+        Result result = new Result();
+        for (int i = 0; i < RUNS; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            result.mRows = run.run();
+            result.mNanos += System.nanoTime() - start;
+            result.mBytes += allocatedBytes() - bytesBefore;
+        }
+        result.mNanos /= RUNS;
+        result.mBytes /= RUNS;
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    private static class Result {
+        int mRows;
+        long mNanos;
+        long mBytes;
+
+        @Override
+        public String toString() {
+            return String.format("%.2f ms, %d KiB per %d rows", mNanos / 1e6, mBytes / 1024, mRows);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * What timing a call with CrimeMetrics costs on the device, against the
+ * cheapest database call it wraps: a getCrime by UUID on 10k crimes, bare and
+ * through TimedCrimeStore. The cost of timing alone must stay under 1% of
+ * that call. Results are written to logcat under "CrimeMetricsBench".
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeMetricsBenchmark {
+    private static final String TAG = "CrimeMetricsBench";
+    private static final String DATABASE_NAME = "crimeMetricsBench.db";
+    private static final int ROWS = 10_000;
+    private static final int LOOKUPS = 5_000;
+    private static final int RECORDS = 1_000_000;
+    private static final int RUNS = 5;
+
+    private Context mContext;
+    private CrimeBaseHelper mHelper;
+    private SQLiteDatabase mDatabase;
+    private final List<UUID> mIds = new ArrayList<>(ROWS);
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new CrimeBaseHelper(mContext, DATABASE_NAME);
+        mDatabase = mHelper.getWritableDatabase();
+
+        List<Crime> crimes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Crime crime = new Crime();
+            crime.setTitle("Metrics crime " + i);
+            crime.setDate(new Date(i * 60_000L));
+            crime.setSuspect("Suspect " + (i % 50));
+            crimes.add(crime);
+            mIds.add(crime.getId());
+        }
+        new SqliteCrimeStore(mDatabase).insertCrimes(crimes);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void timingCostsUnderOnePercent() {
+        // Nothing here is slow, so only the histogram path is measured
+        CrimeMetrics metrics = new CrimeMetrics(TimeUnit.DAYS.toMillis(1));
+        CrimeStore bare = new SqliteCrimeStore(mDatabase);
+        CrimeStore timed = new TimedCrimeStore(new SqliteCrimeStore(mDatabase), metrics);
+
+        double recordNanos = best(() -> {
+            for (int i = 0; i < RECORDS; i++) {
+                metrics.end(CrimeMetrics.Op.GET, CrimeMetrics.start(), "getCrime");
+            }
+            return RECORDS;
+        });
+        double bareNanos = best(() -> lookUp(bare));
+        double timedNanos = best(() -> lookUp(timed));
+
+        double overhead = recordNanos / bareNanos;
+        Log.i(TAG, String.format("timing alone: %.0f ns per call", recordNanos));
+        Log.i(TAG, String.format("getCrime bare: %.1f us, timed: %.1f us", bareNanos / 1e3, timedNanos / 1e3));
+        Log.i(TAG, String.format("timing is %.3f%% of the cheapest call", overhead * 100));
+        // The warm-up and every run of both timed loops were counted
+        assertEquals((RUNS + 1) * (long) (RECORDS + LOOKUPS), metrics.getSnapshot(CrimeMetrics.Op.GET).getCount());
+        assertTrue("timing overhead " + overhead, overhead < 0.01);
+    }
+
+    private int lookUp(CrimeStore store) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertNotNull(store.getCrime(mIds.get(i * 7 % ROWS)));
+        }
+        return LOOKUPS;
+    }
+
+    private interface Run {
+        int run();
+    }
+
+    // Nanoseconds per operation in the fastest run, after a warm-up
+    private static double best(Run run) {
+        run.run();
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            int operations = run.run();
+            best = Math.min(best, (double) (System.nanoTime() - start) / operations);
+        }
+        return best;
+    }
+}
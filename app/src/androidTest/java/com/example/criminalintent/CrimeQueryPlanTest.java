@@ -0,0 +1,129 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every list query compiled from a CrimeQuery, for each kind of keyset key,
+ * reads the crimes table through an index on the device's own SQLite, and
+ * pages through SqliteCrimeStore in the order the query asks for.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeQueryPlanTest {
+    private static final String DATABASE_NAME = "crimeQueryPlan.db";
+
+    private Context mContext;
+    private CrimeBaseHelper mHelper;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new CrimeBaseHelper(mContext, DATABASE_NAME);
+        mDatabase = mHelper.getWritableDatabase();
+
+        List<Crime> crimes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Crime crime = new Crime();
+            crime.setTitle(i % 7 == 0 ? null : "Crime " + (i % 40));
+            crime.setDate(new Date((i % 60) * 1000L));
+            crime.setSolved(i % 3 == 0);
+            crime.setSuspect(i % 2 == 0 ? "Jane Smith" : null);
+            crimes.add(crime);
+        }
+        new SqliteCrimeStore(mDatabase).insertCrimes(crimes);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void everyQueryReadsThroughAnIndex() {
+        CrimePage.Key[] keys = {
+                null,
+                new CrimePage.Key(5000, "Crime 12", 3),
+                new CrimePage.Key(5000, null, 3)
+        };
+        for (CrimeQuery query : allQueries()) {
+            for (CrimePage.Key key : keys) {
+                for (CrimeSql.Where where : CrimeSql.listWhere(query, key)) {
+                    for (String step : explain(CrimeSql.select(CrimeTable.SUMMARY_COLUMNS,
+                            where.getSql(), CrimeSql.orderBy(query), 50), where.getStringArgs())) {
+                        if (step.startsWith("SCAN") || step.startsWith("SEARCH")) {
+                            assertTrue(query + ": " + step, step.contains(" USING "));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pagesFollowTheQueryOrder() {
+        SqliteCrimeStore store = new SqliteCrimeStore(mDatabase);
+        for (CrimeQuery query : allQueries()) {
+            List<CrimeSummary> all = store.getCrimePage(query, null, 1000).getCrimes();
+            List<CrimeSummary> paged = new ArrayList<>();
+            CrimePage page = store.getCrimePage(query, null, 9);
+            paged.addAll(page.getCrimes());
+            while (page.getNextKey() != null) {
+                page = store.getCrimePage(query, page.getNextKey(), 9);
+                paged.addAll(page.getCrimes());
+            }
+            assertEquals(query.toString(), all, paged);
+        }
+    }
+
+    private static List<CrimeQuery> allQueries() {
+        List<CrimeQuery> queries = new ArrayList<>();
+        for (CrimeQuery.Sort sort : CrimeQuery.Sort.values()) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                for (CrimeQuery.SolvedFilter solved : CrimeQuery.SolvedFilter.values()) {
+                    for (int filters = 0; filters < 4; filters++) {
+                        CrimeQuery.Builder query = new CrimeQuery.Builder().sortBy(sort, ascending).solved(solved);
+                        if ((filters & 1) != 0) {
+                            query.dateRange(10_000, 30_000);
+                        }
+                        if ((filters & 2) != 0) {
+                            query.suspect("Jane Smith");
+                        }
+                        queries.add(query.build());
+                    }
+                }
+            }
+        }
+        return queries;
+    }
+
+    private List<String> explain(String sql, String[] args) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency of CrimeLab.searchCrimes over 100k rows, plus checks that the FTS
+ * triggers follow inserts, updates and deletes. Timings are written to logcat
+ * under "CrimeSearchBench".
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeSearchBenchmark {
+    private static final String TAG = "CrimeSearchBench";
+    private static final String DATABASE_NAME = "crimeSearchBench.db";
+    private static final int ROWS = 100_000;
+    private static final int RUNS = 20;
+    private static final int LIMIT = 50;
+
+    private static final String[] WORDS = {
+            "Burglary", "Robbery", "Fraud", "Arson", "Forgery", "Smuggling", "Theft", "Bribery"
+    };
+    private static final String[] PLACES = {
+            "Downtown", "Harbor", "Airport", "Museum", "Warehouse", "Stadium", "Library"
+    };
+
+    private Context mContext;
+    private CrimeBaseHelper mHelper;
+    private CrimeLab mCrimeLab;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new CrimeBaseHelper(mContext, DATABASE_NAME);
+        SQLiteDatabase database = mHelper.getWritableDatabase();
+        mCrimeLab = new CrimeLab(mContext, database);
+
+        List<Crime> crimes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Crime crime = new Crime();
+            crime.setTitle(WORDS[i % WORDS.length] + " - " + PLACES[i % PLACES.length] + " " + i);
+            crime.setDate(new Date(i * 60_000L));
+            crime.setSuspect("Suspect" + (i % 1000));
+            crimes.add(crime);
+        }
+        mCrimeLab.addCrimes(crimes);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void searchLatency() {
+        String[] queries = { "burg", "arson museum", "suspect12", "fo har", "zzz" };
+        for (String query : queries) {
+            mCrimeLab.searchCrimes(query, LIMIT); // warm-up
+
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < RUNS; i++) {
+                found = mCrimeLab.searchCrimes(query, LIMIT).size();
+            }
+            long nanos = (System.nanoTime() - start) / RUNS;
+            Log.i(TAG, String.format("\"%s\": %d rows in %.2f ms", query, found, nanos / 1e6));
+        }
+    }
+
+    @Test
+    public void titleMatchesRankFirst() {
+        List<Crime> crimes = new ArrayList<>();
+        Crime byTitle = new Crime();
+        byTitle.setTitle("Zebra crossing");
+        byTitle.setDate(new Date(0));
+        crimes.add(byTitle);
+        Crime bySuspect = new Crime();
+        bySuspect.setTitle("Parking");
+        bySuspect.setSuspect("Zebra");
+        bySuspect.setDate(new Date(Long.MAX_VALUE / 2));
+        crimes.add(bySuspect);
+        mCrimeLab.addCrimes(crimes);
+
+        List<CrimeSummary> found = mCrimeLab.searchCrimes("zeb", LIMIT);
+        assertEquals(2, found.size());
+        assertEquals(byTitle.getId(), found.get(0).getId());
+        assertEquals(bySuspect.getId(), found.get(1).getId());
+    }
+
+    @Test
+    public void indexFollowsWrites() {
+        Crime crime = new Crime();
+        crime.setTitle("Quokka heist");
+        mCrimeLab.addCrime(crime);
+        assertEquals(1, mCrimeLab.searchCrimes("quok", LIMIT).size());
+
+        crime.setTitle("Wombat heist");
+        mCrimeLab.updateCrime(crime);
+        assertEquals(0, mCrimeLab.searchCrimes("quok", LIMIT).size());
+        assertEquals(1, mCrimeLab.searchCrimes("womb", LIMIT).size());
+
+        mCrimeLab.deleteCrime(crime);
+        assertEquals(0, mCrimeLab.searchCrimes("womb", LIMIT).size());
+        assertTrue(mCrimeLab.searchCrimes("  - ", LIMIT).isEmpty());
+    }
+}
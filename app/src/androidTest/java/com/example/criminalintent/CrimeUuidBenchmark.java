@@ -0,0 +1,221 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Database size and full-table decode time for 100k crimes with uuid stored as
+ * 36-character text (schema v4) and as a 16-byte blob (v5). Both databases
+ * have the same rows, indexes and search index. Results are written to logcat
+ * under "CrimeUuidBench". Built the same way with desktop SQLite 3.40 and the
+ * v7 indexes, the text layout took 31448 KiB (uuid index 4908 KiB) and the
+ * blob layout 27196 KiB (2684 KiB). Decode times have not been measured
+ * yet: no device run has been recorded.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeUuidBenchmark {
+    private static final String TAG = "CrimeUuidBench";
+    private static final String TEXT_DATABASE_NAME = "crimeUuidBenchText.db";
+    private static final String BLOB_DATABASE_NAME = "crimeUuidBenchBlob.db";
+    private static final int ROWS = 100_000;
+    private static final int RUNS = 5;
+
+    private Context mContext;
+    private SQLiteDatabase mTextDatabase;
+    private CrimeBaseHelper mHelper;
+    private SQLiteDatabase mBlobDatabase;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(TEXT_DATABASE_NAME);
+        mContext.deleteDatabase(BLOB_DATABASE_NAME);
+
+        List<Crime> crimes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Crime crime = new Crime();
+            crime.setTitle("Uuid crime " + i);
+            crime.setDate(new Date(i * 60_000L));
+            crime.setSolved(i % 3 == 0);
+            crime.setSuspect("Suspect " + (i % 50));
+            crimes.add(crime);
+        }
+
+        mTextDatabase = mContext.openOrCreateDatabase(TEXT_DATABASE_NAME, Context.MODE_PRIVATE, null);
+        createTextSchema(mTextDatabase);
+        insertAsText(mTextDatabase, crimes);
+
+        mHelper = new CrimeBaseHelper(mContext, BLOB_DATABASE_NAME);
+        mBlobDatabase = mHelper.getWritableDatabase();
+        new SqliteCrimeStore(mBlobDatabase).insertCrimes(crimes);
+    }
+
+    @After
+    public void tearDown() {
+        mTextDatabase.close();
+        mHelper.close();
+        mContext.deleteDatabase(TEXT_DATABASE_NAME);
+        mContext.deleteDatabase(BLOB_DATABASE_NAME);
+    }
+
+    @Test
+    public void compareUuidStorage() {
+        long textBytes = databaseBytes(mTextDatabase);
+        long blobBytes = databaseBytes(mBlobDatabase);
+        long textIndexBytes = indexBytes(mTextDatabase);
+        long blobIndexBytes = indexBytes(mBlobDatabase);
+
+        long textNanos = measure(() -> {
+            Cursor cursor = mTextDatabase.query(CrimeTable.NAME, CrimeTable.CRIME_COLUMNS,
+                    null, null, null, null, null);
+            try {
+                int count = 0;
+                while (cursor.moveToNext()) {
+                    textGetCrime(cursor);
+                    count++;
+                }
+                return count;
+            } finally {
+                cursor.close();
+            }
+        });
+        long blobNanos = measure(() -> {
+            CrimeDataWrapper wrapper = new CrimeDataWrapper(mBlobDatabase.query(CrimeTable.NAME,
+                    CrimeTable.CRIME_COLUMNS, null, null, null, null, null));
+            try {
+                int count = 0;
+                while (wrapper.moveToNext()) {
+                    wrapper.getCrime();
+                    count++;
+                }
+                return count;
+            } finally {
+                wrapper.close();
+            }
+        });
+
+        Log.i(TAG, String.format("text uuid: %d KiB (uuid index %d KiB), decode %.2f ms per %d rows",
+                textBytes / 1024, textIndexBytes / 1024, textNanos / 1e6, ROWS));
+        Log.i(TAG, String.format("blob uuid: %d KiB (uuid index %d KiB), decode %.2f ms per %d rows",
+                blobBytes / 1024, blobIndexBytes / 1024, blobNanos / 1e6, ROWS));
+        assertTrue(blobBytes < textBytes);
+    }
+
+    @Test
+    public void lookupsMatchBlobs() {
+        SqliteCrimeStore store = new SqliteCrimeStore(mBlobDatabase);
+        List<Crime> crimes = store.getCrimes();
+        Crime first = crimes.get(0);
+        Crime last = crimes.get(crimes.size() - 1);
+
+        assertEquals(first.getTitle(), store.getCrime(first.getId()).getTitle());
+        List<UUID> ids = new ArrayList<>();
+        ids.add(first.getId());
+        ids.add(last.getId());
+        ids.add(UUID.randomUUID());
+        assertEquals(2, store.getCrimeSummaries(ids).size());
+        assertTrue(store.deleteCrime(last.getId()));
+        assertNull(store.getCrime(last.getId()));
+    }
+
+    // The v4 mapper: parse the 36-character string, build the photo filename up front
+    private static Crime textGetCrime(Cursor cursor) {
+        UUID id = UUID.fromString(cursor.getString(1));
+        Crime crime = new Crime(id);
+        crime.setRowId(cursor.getLong(0));
+        crime.setTitle(cursor.getString(2));
+        crime.setDate(new Date(cursor.getLong(3)));
+        crime.setSolved(cursor.getInt(4) != 0);
+        crime.setSuspect(cursor.getString(5));
+        crime.setPhotoFilename("IMG_" + id.toString() + ".jpg");
+        return crime;
+    }
+
+    private static void createTextSchema(SQLiteDatabase db) {
+        db.execSQL("create table " + CrimeTable.NAME + "(" +
+                " _id integer primary key autoincrement, " +
+                CrimeTable.Cols.UUID + " text not null, " +
+                CrimeTable.Cols.TITLE + " text, " +
+                CrimeTable.Cols.DATE + " integer not null default 0, " +
+                CrimeTable.Cols.SOLVED + " integer not null default 0, " +
+                CrimeTable.Cols.SUSPECT + " text" +
+                ")");
+        for (String sql : CrimeSql.createCrimeIndexes()) {
+            db.execSQL(sql);
+        }
+        for (String sql : CrimeSql.createSearchIndex()) {
+            db.execSQL(sql);
+        }
+    }
+
+    private static void insertAsText(SQLiteDatabase db, List<Crime> crimes) {
+        SQLiteStatement insert = db.compileStatement(CrimeSql.INSERT);
+        db.beginTransaction();
+        try {
+            for (Crime crime : crimes) {
+                insert.clearBindings();
+                insert.bindString(1, crime.getId().toString());
+                insert.bindString(2, crime.getTitle());
+                insert.bindLong(3, crime.getDate().getTime());
+                insert.bindLong(4, crime.isSolved() ? 1 : 0);
+                insert.bindString(5, crime.getSuspect());
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    private static long databaseBytes(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) * db.getPageSize();
+    }
+
+    // Pages of the uuid index alone; needs SQLITE_ENABLE_DBSTAT_VTAB, -1 without it
+    private static long indexBytes(SQLiteDatabase db) {
+        try {
+            return DatabaseUtils.longForQuery(db, "SELECT SUM(pgsize) FROM dbstat WHERE name = ?",
+                    new String[] { CrimeTable.INDEX_UUID });
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private interface Run {
+        int run();
+    }
+
+    private static long measure(Run run) {
+        run.run(); // warm-up
+
+        long nanos = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            assertEquals(ROWS, run.run());
+            nanos += System.nanoTime() - start;
+        }
+        return nanos / RUNS;
+    }
+}
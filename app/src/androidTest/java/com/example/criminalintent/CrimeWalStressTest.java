@@ -0,0 +1,191 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Readers paging the list and loading single crimes while one writer runs
+ * bulk inserts and updates, as CrimeLab's read pool and database thread do.
+ * In WAL mode the reads must keep going during the write transactions instead
+ * of queueing behind them. Read latency percentiles (log2 bucket upper bounds)
+ * are written to logcat under "CrimeWalStress".
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrimeWalStressTest {
+    private static final String TAG = "CrimeWalStress";
+    private static final String DATABASE_NAME = "crimeWalStress.db";
+    private static final int SEED_ROWS = 5_000;
+    private static final int WRITE_ROUNDS = 20;
+    private static final int ROWS_PER_WRITE = 500;
+    private static final int READERS = 3;
+    private static final int PAGE_SIZE = 50;
+    private static final int PAGES = 5;
+
+    private Context mContext;
+    private CrimeBaseHelper mHelper;
+    private SQLiteDatabase mDatabase;
+    private final List<Crime> mSeeded = new ArrayList<>(SEED_ROWS);
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new CrimeBaseHelper(mContext, DATABASE_NAME);
+        mDatabase = mHelper.getWritableDatabase();
+        for (int i = 0; i < SEED_ROWS; i++) {
+            mSeeded.add(newCrime(i));
+        }
+        new SqliteCrimeStore(mDatabase).insertCrimes(mSeeded);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void databaseIsInWalMode() {
+        assertTrue(mDatabase.isWriteAheadLoggingEnabled());
+        // Inside a transaction the pragmas are read on the writer's connection,
+        // where CrimeBaseHelper.onConfigure set them
+        mDatabase.beginTransactionNonExclusive();
+        try {
+            assertTrue(pragma("journal_mode"), "wal".equalsIgnoreCase(pragma("journal_mode")));
+            assertEquals(CrimeBaseHelper.WAL_AUTOCHECKPOINT_PAGES,
+                    Integer.parseInt(pragma("wal_autocheckpoint")));
+            assertEquals(CrimeBaseHelper.JOURNAL_SIZE_LIMIT_BYTES,
+                    Long.parseLong(pragma("journal_size_limit")));
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private String pragma(String name) {
+        try (Cursor cursor = mDatabase.rawQuery("PRAGMA " + name, null)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        }
+    }
+
+    @Test
+    public void readsKeepGoingDuringBulkWrites() throws InterruptedException {
+        CrimeStore store = new SqliteCrimeStore(mDatabase);
+        LatencyHistogram reads = new LatencyHistogram();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(READERS);
+        CountDownLatch writerDone = new CountDownLatch(1);
+        long[] longestWriteNanos = new long[1];
+
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            Random random = new Random(r);
+            threads.add(new Thread(() -> {
+                started.countDown();
+                try {
+                    CrimePage.Key after = null;
+                    int page = 0;
+                    while (writerDone.getCount() > 0) {
+                        long start = System.nanoTime();
+                        if (random.nextBoolean()) {
+                            CrimePage crimes = store.getCrimePage(CrimeQuery.DEFAULT, after, PAGE_SIZE);
+                            assertEquals(PAGE_SIZE, crimes.size());
+                            // Walk the first few pages by keyset, then start over
+                            after = ++page < PAGES ? crimes.getNextKey() : null;
+                            page %= PAGES;
+                        } else {
+                            Crime seeded = mSeeded.get(random.nextInt(SEED_ROWS));
+                            assertNotNull(store.getCrime(seeded.getId()));
+                        }
+                        reads.record(System.nanoTime() - start);
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }, "stress-reader-" + r));
+        }
+        threads.add(new Thread(() -> {
+            try {
+                started.await();
+                for (int round = 0; round < WRITE_ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    if (round % 2 == 0) {
+                        List<Crime> crimes = new ArrayList<>(ROWS_PER_WRITE);
+                        for (int i = 0; i < ROWS_PER_WRITE; i++) {
+                            crimes.add(newCrime(SEED_ROWS + round * ROWS_PER_WRITE + i));
+                        }
+                        store.insertCrimes(crimes);
+                    } else {
+                        List<Crime> crimes = mSeeded.subList(round * ROWS_PER_WRITE % SEED_ROWS,
+                                round * ROWS_PER_WRITE % SEED_ROWS + ROWS_PER_WRITE);
+                        for (Crime crime : crimes) {
+                            crime.setSolved(!crime.isSolved());
+                        }
+                        assertEquals(ROWS_PER_WRITE, store.updateCrimes(crimes).size());
+                    }
+                    longestWriteNanos[0] = Math.max(longestWriteNanos[0], System.nanoTime() - start);
+                }
+            } catch (Throwable t) {
+                failures.add(t);
+            } finally {
+                writerDone.countDown();
+            }
+        }, "stress-writer"));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (Throwable failure : failures) {
+            Log.e(TAG, "Stress thread failed", failure);
+        }
+        assertTrue(failures.isEmpty());
+
+        LatencyHistogram.Snapshot snapshot = reads.snapshot();
+        Log.i(TAG, String.format("%d reads by %d threads beside %d bulk writes of %d rows",
+                snapshot.getCount(), READERS, WRITE_ROUNDS, ROWS_PER_WRITE));
+        Log.i(TAG, String.format("read ms: p50 %.3f, p95 %.3f, p99 %.3f, max %.3f",
+                snapshot.getPercentileNanos(0.5) / 1e6, snapshot.getPercentileNanos(0.95) / 1e6,
+                snapshot.getPercentileNanos(0.99) / 1e6, snapshot.getMaxNanos() / 1e6));
+        Log.i(TAG, String.format("longest write transaction: %.1f ms", longestWriteNanos[0] / 1e6));
+
+        assertEquals(SEED_ROWS + WRITE_ROUNDS / 2 * ROWS_PER_WRITE, store.count());
+        // Readers only run while the writer does: several reads per write means
+        // they were not queued behind the transactions
+        assertTrue(snapshot.getCount() > READERS * WRITE_ROUNDS);
+        // A read blocked behind a write would take as long as the write itself
+        assertTrue(snapshot.getPercentileNanos(0.95) < longestWriteNanos[0]);
+    }
+
+    private static Crime newCrime(int i) {
+        Crime crime = new Crime();
+        crime.setTitle("Stress crime " + i);
+        crime.setDate(new Date(i * 60_000L));
+        crime.setSolved(i % 3 == 0);
+        crime.setSuspect("Suspect " + (i % 50));
+        return crime;
+    }
+}
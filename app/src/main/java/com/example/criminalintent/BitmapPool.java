@@ -0,0 +1,101 @@
+package com.example.criminalintent;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mutable bitmaps kept for reuse through {@link android.graphics.BitmapFactory.Options#inBitmap},
+ * bucketed by allocation size. Only bitmaps nobody draws any more may be
+ * returned with {@link #put}; in practice that means decode buffers, never a
+ * bitmap that has been handed to a view or a cache. Thread-safe.
+ */
+public class BitmapPool {
+    // A pooled bitmap may be at most this many times larger than the request
+    private static final int MAX_OVERSIZE = 2;
+
+    private final long mMaxBytes;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> mBuckets = new TreeMap<>();
+    private long mBytes;
+    private int mHits;
+    private int mMisses;
+
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /** Returns a pooled bitmap that can hold width x height in config, or null. */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+        Map.Entry<Integer, ArrayDeque<Bitmap>> bucket = mBuckets.ceilingEntry(needed);
+        while (bucket != null && bucket.getKey() <= needed * MAX_OVERSIZE) {
+            Bitmap bitmap = bucket.getValue().poll();
+            if (bucket.getValue().isEmpty()) {
+                mBuckets.remove(bucket.getKey());
+            }
+            if (bitmap != null) {
+                mBytes -= bucket.getKey();
+                if (!bitmap.isRecycled()) {
+                    mHits++;
+                    return bitmap;
+                }
+            }
+            bucket = mBuckets.ceilingEntry(needed);
+        }
+        mMisses++;
+        return null;
+    }
+
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (size > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        ArrayDeque<Bitmap> bucket = mBuckets.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            mBuckets.put(size, bucket);
+        }
+        bucket.push(bitmap);
+        mBytes += size;
+        trimTo(mMaxBytes);
+    }
+
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    public synchronized int getHitCount() {
+        return mHits;
+    }
+
+    public synchronized int getMissCount() {
+        return mMisses;
+    }
+
+    // Drops the largest bitmaps first; they are the least likely to fit a later request
+    private void trimTo(long maxBytes) {
+        while (mBytes > maxBytes && !mBuckets.isEmpty()) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> largest = mBuckets.lastEntry();
+            Bitmap bitmap = largest.getValue().pollLast();
+            if (largest.getValue().isEmpty()) {
+                mBuckets.remove(largest.getKey());
+            }
+            if (bitmap != null) {
+                mBytes -= largest.getKey();
+                bitmap.recycle();
+            }
+        }
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.criminalintent;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Background work whose result is handed to a {@link CrimeLab.Callback} on the
+ * main thread. Once cancelled the callback is never invoked, even if the work
+ * already finished. Tasks that are not abortable (writes) still run when
+ * cancelled; only their callback is dropped.
+ */
+public class CallbackTask<T> extends FutureTask<T> {
+    private static final String TAG = "CallbackTask";
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final CrimeLab.Callback<T> mCallback;
+    private final boolean mAbortable;
+    private volatile boolean mCancelled;
+
+    public CallbackTask(Callable<T> work, CrimeLab.Callback<T> callback, boolean abortable) {
+        super(work);
+        mCallback = callback;
+        mAbortable = abortable;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        mCancelled = true;
+        return mAbortable && super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    protected void done() {
+        if (mCallback == null || mCancelled) {
+            return;
+        }
+
+        T result;
+        try {
+            result = get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "Background task failed", e);
+            return;
+        }
+
+        sMainHandler.post(() -> {
+            if (!mCancelled) {
+                mCallback.onResult(result);
+            }
+        });
+    }
+}
@@ -1,69 +0,0 @@
-package com.example.criminalintent;
-
-import java.util.Date;
-import java.util.UUID;
-
-public class Crime {
-    private UUID mId;
-    private String mTitle;
-    private Date mDate;
-    private boolean mSolved;
-    private String mSuspect;
-    private String mPhotoFilename;
-
-    public Crime() {
-        mId = UUID.randomUUID();
-        mDate = new Date();
-        mPhotoFilename = "IMG_" + mId.toString() + ".jpg";
-    }
-
-    public Crime(UUID id) {
-        mId = id;
-        mDate = new Date();
-        mPhotoFilename = "IMG_" + mId.toString() + ".jpg";
-    }
-
-    public UUID getId() {
-        return mId;
-    }
-
-    public String getTitle() {
-        return mTitle;
-    }
-
-    public void setTitle(String title) {
-        mTitle = title;
-    }
-
-    public Date getDate() {
-        return mDate;
-    }
-
-    public void setDate(Date date) {
-        mDate = date;
-    }
-
-    public boolean isSolved() {
-        return mSolved;
-    }
-
-    public void setSolved(boolean solved) {
-        mSolved = solved;
-    }
-
-    public String getSuspect() {
-        return mSuspect;
-    }
-
-    public void setSuspect(String suspect) {
-        mSuspect = suspect;
-    }
-
-    public String getPhotoFilename() {
-        return mPhotoFilename;
-    }
-
-    public void setPhotoFilename(String photoFilename) {
-        mPhotoFilename = photoFilename;
-    }
-}
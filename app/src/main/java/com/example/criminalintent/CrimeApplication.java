@@ -0,0 +1,13 @@
+package com.example.criminalintent;
+
+import android.app.Application;
+
+public class CrimeApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTrace.markAppStart();
+        // Opens the database on its own thread while the first activity inflates
+        CrimeLab.warmUp(this);
+    }
+}
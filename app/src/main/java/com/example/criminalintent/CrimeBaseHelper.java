@@ -1,38 +1,233 @@
 package com.example.criminalintent;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.example.criminalintent.CrimeDbSchema.CrimeTable;
 
+import java.util.UUID;
+
 public class CrimeBaseHelper extends SQLiteOpenHelper {
-    private static final int VERSION = 2;
+    private static final int VERSION = 7;
     private static final String DATABASE_NAME = "crimeBase.db";
+    // Checkpoint once the WAL holds about 4 MB of 4 KB pages, and cut it back
+    // to that size afterwards, so a bulk import does not checkpoint every few rows
+    static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+    static final long JOURNAL_SIZE_LIMIT_BYTES = 4 * 1024 * 1024;
 
     public CrimeBaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // Lets tests and benchmarks open a scratch database with the same schema
+    CrimeBaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, VERSION);
+        // Readers see the last commit while a write is in progress, each on its
+        // own pooled connection. Set before opening: enabling it later would
+        // reconfigure the connection and undo onConfigure.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    // These settings belong on the primary connection, the only one that
+    // writes and checkpoints. Outside a transaction a read-only statement such
+    // as a PRAGMA may be handed a reader connection, so they run inside one.
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.beginTransactionNonExclusive();
+        try {
+            // In WAL mode NORMAL only syncs at checkpoints: a power cut can lose the
+            // last commits but cannot corrupt the database
+            db.execSQL("PRAGMA synchronous = NORMAL");
+            pragma(db, "wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+            pragma(db, "journal_size_limit = " + JOURNAL_SIZE_LIMIT_BYTES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL("create table " + CrimeTable.NAME + "(" +
-                " _id integer primary key autoincrement, " +
-                CrimeTable.Cols.UUID + ", " +
-                CrimeTable.Cols.TITLE + ", " +
-                CrimeTable.Cols.DATE + ", " +
-                CrimeTable.Cols.SOLVED + ", " +
-                CrimeTable.Cols.SUSPECT +
-                ")"
-        );
+        long start = StartupTrace.begin(StartupTrace.MIGRATE);
+        try {
+            createCrimeTable(db, CrimeTable.NAME);
+            createCrimeIndexes(db);
+            createSearchIndex(db);
+            createCounters(db);
+        } finally {
+            StartupTrace.end(StartupTrace.MIGRATE, start);
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        long start = StartupTrace.begin(StartupTrace.MIGRATE);
+        try {
+            upgrade(db, oldVersion);
+        } finally {
+            StartupTrace.end(StartupTrace.MIGRATE, start);
+        }
+    }
+
+    private static void upgrade(SQLiteDatabase db, int oldVersion) {
         if (oldVersion < 2) {
             // Add suspect column for version 2
-            db.execSQL("ALTER TABLE " + CrimeTable.NAME + 
+            db.execSQL("ALTER TABLE " + CrimeTable.NAME +
                       " ADD COLUMN " + CrimeTable.Cols.SUSPECT + " TEXT");
         }
+        if (oldVersion < 3) {
+            // Version 3 types the columns and indexes uuid, date and solved
+            migrateToTypedTable(db);
+        }
+        if (oldVersion < 4) {
+            // Version 4 adds full-text search over title and suspect
+            createSearchIndex(db);
+        }
+        if (oldVersion < 5) {
+            // Version 5 stores uuid as a 16-byte blob instead of 36 characters of text
+            migrateToBlobUuids(db);
+        }
+        if (oldVersion < 6) {
+            // Version 6 keeps totals and per-type counts in trigger-maintained tables
+            createCounters(db);
+        }
+        if (oldVersion < 7) {
+            // Version 7 indexes for sorting and filtering the list, see CrimeQuery
+            db.execSQL("DROP INDEX IF EXISTS " + CrimeTable.INDEX_SOLVED);
+            createCrimeIndexes(db);
+        }
+    }
+
+    // These pragmas answer with the new value, which execSQL refuses
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        try (Cursor cursor = db.rawQuery("PRAGMA " + pragma, null)) {
+            cursor.moveToFirst();
+        }
+    }
+
+    private static void createCrimeTable(SQLiteDatabase db, String tableName) {
+        db.execSQL(CrimeSql.createCrimeTable(tableName));
+    }
+
+    private static void createCrimeIndexes(SQLiteDatabase db) {
+        for (String sql : CrimeSql.createCrimeIndexes()) {
+            db.execSQL(sql);
+        }
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db) {
+        for (String sql : CrimeSql.createSearchIndex()) {
+            db.execSQL(sql);
+        }
+    }
+
+    private static void createCounters(SQLiteDatabase db) {
+        for (String sql : CrimeSql.createCounters()) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Like migrateToTypedTable, the rows are copied into a new table. Converting
+    // a uuid needs Java (SQLite on older devices has no unhex()), so each row is
+    // re-inserted with its _id kept, which the search index and pages key on.
+    private static void migrateToBlobUuids(SQLiteDatabase db) {
+        String oldTable = CrimeTable.NAME + "_v4";
+        for (String sql : CrimeSql.dropSearchIndex()) {
+            db.execSQL(sql);
+        }
+        db.execSQL("DROP INDEX IF EXISTS " + CrimeTable.INDEX_UUID);
+        db.execSQL("DROP INDEX IF EXISTS " + CrimeTable.INDEX_DATE);
+        db.execSQL("DROP INDEX IF EXISTS " + CrimeTable.INDEX_SOLVED);
+        db.execSQL("ALTER TABLE " + CrimeTable.NAME + " RENAME TO " + oldTable);
+        createCrimeTable(db, CrimeTable.NAME);
+
+        String columns = "_id, " +
+                CrimeTable.Cols.UUID + ", " +
+                CrimeTable.Cols.TITLE + ", " +
+                CrimeTable.Cols.DATE + ", " +
+                CrimeTable.Cols.SOLVED + ", " +
+                CrimeTable.Cols.SUSPECT;
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + CrimeTable.NAME +
+                "(" + columns + ") VALUES (?, ?, ?, ?, ?, ?)");
+        Cursor rows = db.rawQuery("SELECT " + columns + " FROM " + oldTable, null);
+        try {
+            while (rows.moveToNext()) {
+                insert.clearBindings();
+                insert.bindLong(1, rows.getLong(0));
+                insert.bindBlob(2, UuidBytes.toBytes(parseUuid(rows.getString(1))));
+                if (!rows.isNull(2)) {
+                    insert.bindString(3, rows.getString(2));
+                }
+                insert.bindLong(4, rows.getLong(3));
+                insert.bindLong(5, rows.getLong(4));
+                if (!rows.isNull(5)) {
+                    insert.bindString(6, rows.getString(5));
+                }
+                insert.executeInsert();
+            }
+        } finally {
+            rows.close();
+            insert.close();
+        }
+        db.execSQL("DROP TABLE " + oldTable);
+
+        createCrimeIndexes(db);
+        createSearchIndex(db);
+    }
+
+    // v3 made uuids unique and non-null, but not necessarily well-formed
+    private static UUID parseUuid(String uuid) {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return UUID.randomUUID();
+        }
+    }
+
+    // SQLite cannot change column types in place, so the v1/v2 table is copied
+    // into a freshly typed one. onUpgrade already runs inside a transaction.
+    private static void migrateToTypedTable(SQLiteDatabase db) {
+        String oldTable = CrimeTable.NAME + "_v2";
+        db.execSQL("ALTER TABLE " + CrimeTable.NAME + " RENAME TO " + oldTable);
+
+        // The unique index would reject duplicate or missing UUIDs, so every row
+        // but the first one of each uuid gets a fresh id instead of being dropped
+        Cursor duplicates = db.rawQuery("SELECT _id FROM " + oldTable +
+                " WHERE " + CrimeTable.Cols.UUID + " IS NULL" +
+                " OR _id NOT IN (SELECT MIN(_id) FROM " + oldTable +
+                " GROUP BY " + CrimeTable.Cols.UUID + ")", null);
+        try {
+            ContentValues values = new ContentValues();
+            while (duplicates.moveToNext()) {
+                values.put(CrimeTable.Cols.UUID, UUID.randomUUID().toString());
+                db.update(oldTable, values, "_id = ?",
+                        new String[] { Long.toString(duplicates.getLong(0)) });
+            }
+        } finally {
+            duplicates.close();
+        }
+
+        createCrimeTable(db, CrimeTable.NAME);
+        String columns = "_id, " +
+                CrimeTable.Cols.UUID + ", " +
+                CrimeTable.Cols.TITLE + ", " +
+                CrimeTable.Cols.DATE + ", " +
+                CrimeTable.Cols.SOLVED + ", " +
+                CrimeTable.Cols.SUSPECT;
+        db.execSQL("INSERT INTO " + CrimeTable.NAME + "(" + columns + ")" +
+                " SELECT _id, " +
+                CrimeTable.Cols.UUID + ", " +
+                CrimeTable.Cols.TITLE + ", " +
+                "CAST(IFNULL(" + CrimeTable.Cols.DATE + ", 0) AS INTEGER), " +
+                "CASE WHEN " + CrimeTable.Cols.SOLVED + " THEN 1 ELSE 0 END, " +
+                CrimeTable.Cols.SUSPECT +
+                " FROM " + oldTable);
+        db.execSQL("DROP TABLE " + oldTable);
+
+        createCrimeIndexes(db);
     }
 }
@@ -0,0 +1,115 @@
+package com.example.criminalintent;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Crimes inserted, updated and deleted by one committed write, or by several
+ * writes merged together. A UUID appears in at most one of the three sets.
+ */
+public final class CrimeChange {
+    private final Set<UUID> mInserted;
+    private final Set<UUID> mUpdated;
+    private final Set<UUID> mDeleted;
+
+    private CrimeChange(Set<UUID> inserted, Set<UUID> updated, Set<UUID> deleted) {
+        mInserted = Collections.unmodifiableSet(inserted);
+        mUpdated = Collections.unmodifiableSet(updated);
+        mDeleted = Collections.unmodifiableSet(deleted);
+    }
+
+    public static CrimeChange inserted(UUID id) {
+        return new Builder().inserted(id).build();
+    }
+
+    public static CrimeChange updated(UUID id) {
+        return new Builder().updated(id).build();
+    }
+
+    public static CrimeChange deleted(UUID id) {
+        return new Builder().deleted(id).build();
+    }
+
+    public Set<UUID> getInserted() {
+        return mInserted;
+    }
+
+    public Set<UUID> getUpdated() {
+        return mUpdated;
+    }
+
+    public Set<UUID> getDeleted() {
+        return mDeleted;
+    }
+
+    // True when rows were added or removed, so list positions may have shifted
+    public boolean hasStructuralChanges() {
+        return !mInserted.isEmpty() || !mDeleted.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return mInserted.isEmpty() && mUpdated.isEmpty() && mDeleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "CrimeChange{inserted=" + mInserted.size() + ", updated=" + mUpdated.size()
+                + ", deleted=" + mDeleted.size() + "}";
+    }
+
+    /**
+     * Folds writes together in the order they happened, so that an insert and
+     * a later update still read as an insert and an insert that was deleted
+     * again disappears.
+     */
+    public static final class Builder {
+        private final Set<UUID> mInserted = new HashSet<>();
+        private final Set<UUID> mUpdated = new HashSet<>();
+        private final Set<UUID> mDeleted = new HashSet<>();
+
+        public Builder inserted(UUID id) {
+            // Deleted and inserted again under the same id: the row still exists, changed
+            if (mDeleted.remove(id)) {
+                mUpdated.add(id);
+            } else {
+                mInserted.add(id);
+            }
+            return this;
+        }
+
+        public Builder updated(UUID id) {
+            if (!mInserted.contains(id)) {
+                mUpdated.add(id);
+            }
+            return this;
+        }
+
+        public Builder deleted(UUID id) {
+            if (!mInserted.remove(id)) {
+                mUpdated.remove(id);
+                mDeleted.add(id);
+            }
+            return this;
+        }
+
+        public Builder add(CrimeChange change) {
+            for (UUID id : change.mInserted) {
+                inserted(id);
+            }
+            for (UUID id : change.mUpdated) {
+                updated(id);
+            }
+            for (UUID id : change.mDeleted) {
+                deleted(id);
+            }
+            return this;
+        }
+
+        public CrimeChange build() {
+            return new CrimeChange(new HashSet<>(mInserted), new HashSet<>(mUpdated),
+                    new HashSet<>(mDeleted));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.criminalintent;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivers {@link CrimeChange}s to observers on the main thread. An observer
+ * only hears about changes while its owner is started; anything published
+ * while it is stopped is merged and delivered once, on the next start, and
+ * the observer is dropped when the owner is destroyed.
+ */
+public class CrimeChangeBus {
+    public interface Observer {
+        void onCrimesChanged(CrimeChange change);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Only touched on the main thread
+    private final List<Registration> mRegistrations = new ArrayList<>();
+
+    /** Must be called on the main thread. */
+    public void observe(LifecycleOwner owner, Observer observer) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        Registration registration = new Registration(owner, observer);
+        mRegistrations.add(registration);
+        owner.getLifecycle().addObserver(registration);
+    }
+
+    /** Callable from any thread, after the change has been committed. */
+    public void publish(CrimeChange change) {
+        if (change.isEmpty()) {
+            return;
+        }
+        mMainHandler.post(() -> {
+            for (Registration registration : new ArrayList<>(mRegistrations)) {
+                registration.deliver(change);
+            }
+        });
+    }
+
+    private class Registration implements LifecycleEventObserver {
+        private final LifecycleOwner mOwner;
+        private final Observer mObserver;
+        private CrimeChange.Builder mPending;
+
+        Registration(LifecycleOwner owner, Observer observer) {
+            mOwner = owner;
+            mObserver = observer;
+        }
+
+        void deliver(CrimeChange change) {
+            if (!mRegistrations.contains(this)) {
+                return;
+            }
+            if (mOwner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                mObserver.onCrimesChanged(change);
+            } else {
+                if (mPending == null) {
+                    mPending = new CrimeChange.Builder();
+                }
+                mPending.add(change);
+            }
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_START && mPending != null) {
+                CrimeChange pending = mPending.build();
+                mPending = null;
+                if (!pending.isEmpty()) {
+                    mObserver.onCrimesChanged(pending);
+                }
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                mRegistrations.remove(this);
+                mOwner.getLifecycle().removeObserver(this);
+            }
+        }
+    }
+}
@@ -6,26 +6,63 @@ import android.database.CursorWrapper;
 import com.example.criminalintent.CrimeDbSchema.CrimeTable;
 
 import java.util.Date;
-import java.util.UUID;
 
 public class CrimeDataWrapper extends CursorWrapper {
+    // Column ordinals are looked up once per cursor; -1 when not in the projection
+    private final int mIdIndex;
+    private final int mUuidIndex;
+    private final int mTitleIndex;
+    private final int mDateIndex;
+    private final int mSolvedIndex;
+    private final int mSuspectIndex;
+
     public CrimeDataWrapper(Cursor crimeData) {
         super(crimeData);
+        mIdIndex = crimeData.getColumnIndex(CrimeTable.Cols.ID);
+        mUuidIndex = crimeData.getColumnIndex(CrimeTable.Cols.UUID);
+        mTitleIndex = crimeData.getColumnIndex(CrimeTable.Cols.TITLE);
+        mDateIndex = crimeData.getColumnIndex(CrimeTable.Cols.DATE);
+        mSolvedIndex = crimeData.getColumnIndex(CrimeTable.Cols.SOLVED);
+        mSuspectIndex = crimeData.getColumnIndex(CrimeTable.Cols.SUSPECT);
     }
 
     public Crime getCrime() {
-        String uuidString = getString(getColumnIndex(CrimeTable.Cols.UUID));
-        String title = getString(getColumnIndex(CrimeTable.Cols.TITLE));
-        long date = getLong(getColumnIndex(CrimeTable.Cols.DATE));
-        int isSolved = getInt(getColumnIndex(CrimeTable.Cols.SOLVED));
-        String suspect = getString(getColumnIndex(CrimeTable.Cols.SUSPECT));
-
-        Crime crime = new Crime(UUID.fromString(uuidString));
-        crime.setTitle(title);
-        crime.setDate(new Date(date));
-        crime.setSolved(isSolved != 0);
-        crime.setSuspect(suspect);
+        Crime crime = new Crime(UuidBytes.toUuid(getBlob(mUuidIndex)));
+        crime.setRowId(getLong(mIdIndex));
+        crime.setTitle(getString(mTitleIndex));
+        crime.setDate(new Date(getLong(mDateIndex)));
+        crime.setSolved(getInt(mSolvedIndex) != 0);
+        crime.setSuspect(getString(mSuspectIndex));
+        crime.clearDirtyFields();
 
         return crime;
     }
+
+    public CrimeSummary getCrimeSummary() {
+        byte[] uuid = getBlob(mUuidIndex);
+        return new CrimeSummary(
+                getLong(mIdIndex),
+                UuidBytes.mostSigBits(uuid),
+                UuidBytes.leastSigBits(uuid),
+                getString(mTitleIndex),
+                getLong(mDateIndex),
+                getInt(mSolvedIndex) != 0);
+    }
+
+    // Hands the current row's columns over without building a Crime
+    public void visitRow(CrimeStore.RowVisitor visitor) {
+        byte[] uuid = getBlob(mUuidIndex);
+        visitor.visit(
+                getLong(mIdIndex),
+                UuidBytes.mostSigBits(uuid),
+                UuidBytes.leastSigBits(uuid),
+                getString(mTitleIndex),
+                getLong(mDateIndex),
+                getInt(mSolvedIndex) != 0,
+                getString(mSuspectIndex));
+    }
+
+    public CrimePage.Key getPageKey() {
+        return new CrimePage.Key(getLong(mDateIndex), getString(mTitleIndex), getLong(mIdIndex));
+    }
 }
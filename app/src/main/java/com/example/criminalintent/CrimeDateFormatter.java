@@ -0,0 +1,96 @@
+package com.example.criminalintent;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats crime dates for list rows without allocating once a day has been
+ * seen: formatted strings are kept in a small direct-mapped cache keyed by
+ * local day, and a change of default Locale or time zone clears it. Not
+ * thread-safe; use {@link #get()} for the calling thread's instance.
+ */
+public class CrimeDateFormatter {
+    private static final String PATTERN = "dd MMM, yyyy";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    // Power of two, so a day maps to a slot with a mask
+    private static final int CACHE_SIZE = 256;
+    // TimeZone.getDefault() returns a fresh clone, so the default zone is only
+    // looked at this often rather than on every format
+    private static final long ZONE_CHECK_NANOS = 1_000_000_000L;
+
+    // Not ThreadLocal.withInitial, which needs API 26
+    private static final ThreadLocal<CrimeDateFormatter> sFormatters = new ThreadLocal<CrimeDateFormatter>() {
+        @Override
+        protected CrimeDateFormatter initialValue() {
+            return new CrimeDateFormatter();
+        }
+    };
+
+    // Null while following the default zone
+    private final TimeZone mFixedTimeZone;
+    private TimeZone mTimeZone;
+    private long mZoneCheckedNanos;
+    private final long[] mDays = new long[CACHE_SIZE];
+    private final String[] mFormatted = new String[CACHE_SIZE];
+    private final Date mDate = new Date();
+    private Locale mLocale;
+    private SimpleDateFormat mFormat;
+
+    public static CrimeDateFormatter get() {
+        return sFormatters.get();
+    }
+
+    // Follows the device's time zone when the user changes it
+    public CrimeDateFormatter() {
+        mFixedTimeZone = null;
+        mTimeZone = TimeZone.getDefault();
+        mZoneCheckedNanos = System.nanoTime();
+    }
+
+    public CrimeDateFormatter(TimeZone timeZone) {
+        mFixedTimeZone = timeZone;
+        mTimeZone = timeZone;
+    }
+
+    public String format(long millis) {
+        // Compared by reference: Locale.getDefault() returns the same instance until it changes
+        Locale locale = Locale.getDefault();
+        if (locale != mLocale || defaultZoneChanged()) {
+            reset(locale);
+        }
+
+        long day = Math.floorDiv(millis + mTimeZone.getOffset(millis), DAY_MILLIS);
+        int slot = (int) (day & (CACHE_SIZE - 1));
+        if (mDays[slot] != day || mFormatted[slot] == null) {
+            mDate.setTime(millis);
+            mDays[slot] = day;
+            mFormatted[slot] = mFormat.format(mDate);
+        }
+        return mFormatted[slot];
+    }
+
+    private boolean defaultZoneChanged() {
+        long now = System.nanoTime();
+        if (mFixedTimeZone != null || now - mZoneCheckedNanos < ZONE_CHECK_NANOS) {
+            return false;
+        }
+        mZoneCheckedNanos = now;
+        TimeZone timeZone = TimeZone.getDefault();
+        if (timeZone.getID().equals(mTimeZone.getID())) {
+            return false;
+        }
+        mTimeZone = timeZone;
+        return true;
+    }
+
+    private void reset(Locale locale) {
+        mLocale = locale;
+        mFormat = new SimpleDateFormat(PATTERN, locale);
+        mFormat.setTimeZone(mTimeZone);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            mFormatted[i] = null;
+        }
+    }
+}
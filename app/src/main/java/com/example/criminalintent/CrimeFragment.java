@@ -3,7 +3,6 @@ package com.example.criminalintent;
 import android.app.DatePickerDialog;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.ContactsContract;
@@ -43,9 +42,13 @@ public class CrimeFragment extends Fragment {
     private ImageView mPhotoView;
     private Button mPhotoButton;
     private File mPhotoFile;
+    private final PendingRequests mRequests = new PendingRequests();
+    private CrimeSaver mSaver;
     private static final String ARG_CRIME_ID = "crime_id";
     private static final int REQUEST_SUSPECT = 0;
     private static final int REQUEST_PHOTO = 1;
+    // Edits are written once they pause for this long, and always on stop
+    private static final long SAVE_DELAY_MS = 500;
 
     public static CrimeFragment newInstance(UUID crimeId) {
         Bundle args = new Bundle();
@@ -59,12 +62,29 @@ public class CrimeFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         UUID crimeId = (UUID) getArguments().getSerializable(ARG_CRIME_ID);
-        mCrime = CrimeLab.get(getActivity()).getCrime(crimeId);
-        if (mCrime == null) {
-            mCrime = new Crime();
-            // Add the new crime to CrimeLab
-            CrimeLab.get(getActivity()).addCrime(mCrime);
+        CrimeLab crimeLab = CrimeLab.get(getActivity());
+        mSaver = new CrimeSaver(crimeLab, SAVE_DELAY_MS);
+
+        // A crime prefetched by the pager binds straight away, with no round trip
+        Crime warm = crimeLab.peekCrime(crimeId);
+        if (warm != null) {
+            onCrimeLoaded(warm);
+            return;
         }
+        mRequests.add(crimeLab.getCrimeAsync(crimeId, crime -> {
+            if (crime == null) {
+                crime = new Crime();
+                // Add the new crime to CrimeLab
+                crimeLab.addCrimeAsync(crime, null);
+            }
+            onCrimeLoaded(crime);
+        }));
+    }
+
+    private void onCrimeLoaded(Crime crime) {
+        mCrime = crime;
+        // Filling in blanks for the views is not an edit, so it must not cost a write
+        int dirtyFields = mCrime.getDirtyFields();
 
         // Ensure suspect field is initialized
         if (mCrime.getSuspect() == null) {
@@ -80,9 +100,24 @@ public class CrimeFragment extends Fragment {
         if (mCrime.getDate() == null) {
             mCrime.setDate(new Date());
         }
+        mCrime.clearDirtyFields();
+        mCrime.markDirtyFields(dirtyFields);
 
         // Initialize photo file
         mPhotoFile = CrimeLab.get(getActivity()).getPhotoFile(mCrime);
+
+        if (getView() != null) {
+            bindCrime();
+        }
+    }
+
+    // Fills the views from mCrime; called once both the view and the crime exist
+    private void bindCrime() {
+        mTitleField.setText(mCrime.getTitle());
+        mSolvedCheckBox.setChecked(mCrime.isSolved());
+        updateDate();
+        updatePhotoView();
+        updateSuspectButtonText();
     }
 
     @Nullable
@@ -92,7 +127,6 @@ public class CrimeFragment extends Fragment {
         View v = inflater.inflate(R.layout.fragment_crime, container, false);
 
         mTitleField = v.findViewById(R.id.crime_title);
-        mTitleField.setText(mCrime.getTitle() != null ? mCrime.getTitle() : "");
         mTitleField.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {
@@ -103,6 +137,7 @@ public class CrimeFragment extends Fragment {
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 if (mCrime != null) {
                     mCrime.setTitle(s.toString());
+                    mSaver.onChanged(mCrime);
                 }
             }
 
@@ -113,13 +148,13 @@ public class CrimeFragment extends Fragment {
         });
 
         mDateButton = v.findViewById(R.id.crime_date);
-        updateDate();
         mDateButton.setOnClickListener(v1 -> {
             if (mCrime != null && mCrime.getDate() != null) {
                 DatePickerDialog dialog = new DatePickerDialog(
                         getContext(),
                         (view, year, month, dayOfMonth) -> {
                             mCrime.setDate(new Date(year - 1900, month, dayOfMonth));
+                            mSaver.onChanged(mCrime);
                             updateDate();
                         },
                         mCrime.getDate().getYear() + 1900,
@@ -133,6 +168,7 @@ public class CrimeFragment extends Fragment {
         mSolvedCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
             if (mCrime != null) {
                 mCrime.setSolved(isChecked);
+                mSaver.onChanged(mCrime);
             }
         });
 
@@ -211,9 +247,11 @@ public class CrimeFragment extends Fragment {
             }
         });
 
-        updatePhotoView();
-
-        updateSuspectButtonText();
+        if (mCrime != null) {
+            bindCrime();
+        } else {
+            updateSuspectButtonText();
+        }
 
         return v;
     }
@@ -221,9 +259,20 @@ public class CrimeFragment extends Fragment {
     @Override
     public void onPause() {
         super.onPause();
-        if (mCrime != null) {
-            CrimeLab.get(getActivity()).updateCrime(mCrime);
-        }
+        // ViewPager2 only pauses the page swiped away, so pending edits go out here too
+        mSaver.flush();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        mSaver.flush();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mRequests.cancelAll();
     }
 
     @Override
@@ -245,7 +294,7 @@ public class CrimeFragment extends Fragment {
                         contactData.moveToFirst();
                         String suspect = contactData.getString(0);
                         mCrime.setSuspect(suspect);
-                        CrimeLab.get(getActivity()).updateCrime(mCrime);
+                        mSaver.onChanged(mCrime);
                         updateSuspectButtonText();
                     }
                 } finally {
@@ -255,6 +304,9 @@ public class CrimeFragment extends Fragment {
                 }
             }
         } else if (requestCode == REQUEST_PHOTO) {
+            if (mPhotoFile != null) {
+                ThumbnailCache.get(getActivity()).invalidate(mPhotoFile);
+            }
             updatePhotoView();
         }
     }
@@ -294,12 +346,18 @@ public class CrimeFragment extends Fragment {
     }
 
     private void updatePhotoView() {
-        if (mPhotoFile == null || !mPhotoFile.exists()) {
+        if (mPhotoFile == null) {
             mPhotoView.setImageDrawable(null);
-        } else {
-            Bitmap bitmap = PictureUtils.getScaledBitmap(mPhotoFile.getPath(), getActivity());
-            mPhotoView.setImageBitmap(bitmap);
+            return;
         }
+
+        // The thumbnail arrives from the cache or a background decode; a missing photo gives null
+        int size = getResources().getDimensionPixelSize(R.dimen.crime_photo_size);
+        mRequests.add(ThumbnailCache.get(getActivity()).load(mPhotoFile, size, size, bitmap -> {
+            if (mPhotoView != null && getView() != null) {
+                mPhotoView.setImageBitmap(bitmap);
+            }
+        }));
     }
 
     private void openCameraForPhoto() {
@@ -1,100 +1,744 @@
 package com.example.criminalintent;
 
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
 
-import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+import androidx.lifecycle.LifecycleOwner;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CrimeLab {
-    private static CrimeLab sCrimeLab;
+    private static final String TAG = "CrimeLab";
+
+    // Writes, and work that must follow them in order, run one at a time on
+    // this thread so the UI never waits on disk I/O and writes are applied in
+    // the order they were issued
+    private static final ExecutorService sDatabaseExecutor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "CrimeLab-db"));
+    // Reads run beside the writer on a small pool. With WAL each thread gets a
+    // connection of its own and sees the last commit, so list paging and detail
+    // loads carry on during a bulk write. Android pools up to four connections
+    // and one of them is the writer's.
+    private static final int READ_THREADS = 3;
+    private static final AtomicInteger sReadThreadCount = new AtomicInteger();
+    private static final ExecutorService sReadExecutor = Executors.newFixedThreadPool(READ_THREADS,
+            runnable -> new Thread(runnable, "CrimeLab-read-" + sReadThreadCount.incrementAndGet()));
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static final int DEFAULT_CACHE_CAPACITY = 256;
+    // The list snapshot holds the first few pages, enough for the first screens
+    private static final int LIST_SNAPSHOT_ROWS = 200;
+    private static final String LIST_SNAPSHOT_NAME = "crime_list.snapshot";
+    // Database calls and photo decodes slower than this are logged
+    private static final long SLOW_OP_MILLIS = 50;
+
+    // Shared by every store, so scratch databases in tests count too
+    private static final CrimeMetrics sMetrics = new CrimeMetrics(SLOW_OP_MILLIS);
+
+    static {
+        sMetrics.setSlowOpListener(op -> Log.w(TAG, "Slow " + op));
+    }
+
+    private static volatile CrimeLab sCrimeLab;
     private Context mContext;
-    private SQLiteDatabase mDatabase;
+    // Opens the app's database on first use; null when a store was handed in
+    private final CrimeBaseHelper mHelper;
+    // Null until getStore() has opened the database
+    private volatile CrimeStore mStore;
+    // Identity map for getCrime: at most one Crime per UUID is handed out while it
+    // stays cached. Every write goes through the cache so it never serves stale rows.
+    private final LruCache<UUID, Crime> mCrimeCache = new LruCache<>(DEFAULT_CACHE_CAPACITY);
+    // Bumped by every write that touches cached rows; guarded by mCrimeCache
+    private long mCacheEpoch;
+    private final CrimeChangeBus mChangeBus = new CrimeChangeBus();
+    // Null for scratch databases, whose rows must not replace the app's snapshot
+    private final File mListSnapshotFile;
+    private final AtomicBoolean mListSnapshotQueued = new AtomicBoolean();
+    // Sample data is seeded once the first list query is done, not in its way
+    private final AtomicBoolean mFirstQueryDone = new AtomicBoolean();
+    // peekCrime results, only counted on the main thread
+    private int mPeekHits;
+    private int mPeekMisses;
 
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Returns the app's CrimeLab, creating it on first use from any thread.
+     * Creating it does not touch the database: that is opened by the first
+     * call that needs it, normally a task on the database thread.
+     */
     public static CrimeLab get(Context context) {
-        if (sCrimeLab == null) {
-            sCrimeLab = new CrimeLab(context);
+        CrimeLab crimeLab = sCrimeLab;
+        if (crimeLab == null) {
+            synchronized (CrimeLab.class) {
+                crimeLab = sCrimeLab;
+                if (crimeLab == null) {
+                    crimeLab = new CrimeLab(context);
+                    sCrimeLab = crimeLab;
+                }
+            }
+        }
+        return crimeLab;
+    }
+
+    // Replaces the app's CrimeLab and returns the old one; tests use null to race
+    // get() on an empty holder, then put the app's instance back
+    static CrimeLab swapInstance(CrimeLab crimeLab) {
+        synchronized (CrimeLab.class) {
+            CrimeLab previous = sCrimeLab;
+            sCrimeLab = crimeLab;
+            return previous;
         }
-        return sCrimeLab;
+    }
+
+    /**
+     * Latency histograms and the slow log for every CrimeLab database call and
+     * photo decode; see {@link CrimeListActivity#dump} for reading them.
+     */
+    public static CrimeMetrics getMetrics() {
+        return sMetrics;
+    }
+
+    /**
+     * Queues the database open on the database thread, ahead of the first
+     * screen's queries. Returns at once; called from {@link CrimeApplication}.
+     */
+    public static void warmUp(Context context) {
+        get(context).queueOpen();
     }
 
     private CrimeLab(Context context) {
         mContext = context.getApplicationContext();
-        mDatabase = new CrimeBaseHelper(mContext).getWritableDatabase();
-        generateSampleCrimes();
+        mHelper = new CrimeBaseHelper(mContext);
+        mListSnapshotFile = getListSnapshotFile(mContext);
+    }
+
+    // Used by startup tests: opens helper's scratch database on first use and
+    // seeds it after the first list query, as the app's CrimeLab does
+    CrimeLab(Context context, CrimeBaseHelper helper) {
+        mContext = context.getApplicationContext();
+        mHelper = helper;
+        mListSnapshotFile = null;
+    }
+
+    // Used by tests and benchmarks to run against a scratch database
+    CrimeLab(Context context, SQLiteDatabase database) {
+        this(context, new SqliteCrimeStore(database));
+    }
+
+    CrimeLab(Context context, CrimeStore store) {
+        mContext = context.getApplicationContext();
+        mHelper = null;
+        mListSnapshotFile = null;
+        mStore = new TimedCrimeStore(store, sMetrics);
+        mFirstQueryDone.set(true);
     }
 
     public List<Crime> getCrimes() {
-        List<Crime> crimes = new ArrayList<>();
+        return getStore().getCrimes();
+    }
 
-        CrimeDataWrapper dataWrapper = queryCrimes(null, null);
+    /** Reads the row id and UUID of every crime, in list order. */
+    public CrimeIdIndex getCrimeIdIndex() {
+        long start = beginFirstQuery();
+        try {
+            return getStore().getCrimeIdIndex();
+        } finally {
+            endFirstQuery(start);
+        }
+    }
 
+    /**
+     * Reads up to pageSize of query's crimes that come after the given key, or
+     * the first page when after is null. Sorting and filtering run in SQLite.
+     */
+    public CrimePage getCrimePage(CrimeQuery query, CrimePage.Key after, int pageSize) {
+        long start = beginFirstQuery();
         try {
-            dataWrapper.moveToFirst();
-            while (!dataWrapper.isAfterLast()) {
-                crimes.add(dataWrapper.getCrime());
-                dataWrapper.moveToNext();
-            }
+            return getStore().getCrimePage(query, after, pageSize);
         } finally {
-            dataWrapper.close();
+            endFirstQuery(start);
         }
+    }
 
+    /**
+     * Re-reads the first pageCount pages in one pass. Only the pages listed in
+     * materialize are turned into CrimeSummary objects; the rest just report their
+     * boundary key so later pages can still be reached by keyset.
+     */
+    public List<CrimePage> getCrimePages(CrimeQuery query, int pageCount, int pageSize,
+            Set<Integer> materialize) {
+        long start = beginFirstQuery();
+        try {
+            return getStore().getCrimePages(query, pageCount, pageSize, materialize);
+        } finally {
+            endFirstQuery(start);
+        }
+    }
+
+    /**
+     * Finds up to limit crimes whose title or suspect has a word starting with
+     * each word of query, title matches first and then newest first. Returns an
+     * empty list when query has no searchable words.
+     */
+    public List<CrimeSummary> searchCrimes(String query, int limit) {
+        return getStore().searchCrimes(query, limit);
+    }
+
+    /**
+     * Reads the list rows of the given crimes, in no particular order; missing
+     * ones are skipped. Each id is a bound parameter, so keep it under 999 ids.
+     */
+    public List<CrimeSummary> getCrimeSummaries(Collection<UUID> ids) {
+        return getStore().getCrimeSummaries(ids);
+    }
+
+    /**
+     * Loads every crime in ids that is not cached yet with a single IN query and
+     * caches it, so a later {@link #peekCrime} or getCrime is answered from
+     * memory. Returns the crimes found, in no particular order. Keep ids under
+     * 999, like getCrimeSummaries.
+     */
+    public List<Crime> prefetchCrimes(Collection<UUID> ids) {
+        List<Crime> crimes = new ArrayList<>(ids.size());
+        List<UUID> missing = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            Crime cached = mCrimeCache.get(id);
+            if (cached != null) {
+                crimes.add(cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return crimes;
+        }
+
+        long epoch = getCacheEpoch();
+        for (Crime crime : getStore().getCrimes(missing)) {
+            crimes.add(cacheRead(crime, epoch));
+        }
         return crimes;
     }
 
+    /**
+     * Returns the crime if it is cached, without touching the database. Meant
+     * for the main thread, to bind a prefetched crime without waiting a frame.
+     */
+    public Crime peekCrime(UUID id) {
+        Crime crime = mCrimeCache.get(id);
+        if (crime != null) {
+            mPeekHits++;
+        } else {
+            mPeekMisses++;
+        }
+        return crime;
+    }
+
+    public int getPeekHitCount() {
+        return mPeekHits;
+    }
+
+    public int getPeekMissCount() {
+        return mPeekMisses;
+    }
+
     public Crime getCrime(UUID id) {
-        CrimeDataWrapper dataWrapper = queryCrimes(
-                CrimeTable.Cols.UUID + " = ?",
-                new String[] { id.toString() });
+        Crime cached = mCrimeCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
 
-        try {
-            if (dataWrapper.getCount() == 0) {
-                return null;
-            }
+        long epoch = getCacheEpoch();
+        Crime crime = getStore().getCrime(id);
+        return crime != null ? cacheRead(crime, epoch) : null;
+    }
 
-            dataWrapper.moveToFirst();
-            return dataWrapper.getCrime();
+    /**
+     * Totals, solved and unsolved counts, overall and per crime type. Read from
+     * rollups the database keeps up to date on every write, so the cost does
+     * not grow with the number of crimes.
+     */
+    public CrimeStats getStats() {
+        return getStore().getStats();
+    }
+
+    /**
+     * Recounts every crime and compares the result with {@link #getStats};
+     * rebuilds the rollups if they drifted. Scans the whole table, so it is
+     * for tests and diagnostics, not routine reads. Returns whether they matched.
+     */
+    public boolean checkStats() {
+        CrimeStats stored = getStore().getStats();
+        CrimeStats counted = getStore().countStats();
+        if (stored.equals(counted)) {
+            return true;
+        }
+        Log.w(TAG, "Crime stats drifted, rebuilding: had " + stored + ", counted " + counted);
+        getStore().rebuildStats();
+        return false;
+    }
+
+    /**
+     * Streams every crime into file, replacing it, in the exporter's format. A
+     * cancelled or failed export deletes the partial file.
+     */
+    public File exportCrimes(CrimeExporter exporter, File file) throws IOException {
+        boolean complete = false;
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            exporter.export(getStore(), out.getChannel());
+            complete = true;
         } finally {
-            dataWrapper.close();
+            out.close();
+            if (!complete) {
+                file.delete();
+            }
         }
+        return file;
     }
 
     public void addCrime(Crime crime) {
-        ContentValues values = getContentValues(crime);
-        mDatabase.insert(CrimeTable.NAME, null, values);
+        Crime snapshot = crime.copy();
+        insertSnapshot(crime, snapshot);
+        crime.clearWrittenFields(snapshot, Crime.ALL_FIELDS);
     }
 
     public void updateCrime(Crime crime) {
-        String uuidString = crime.getId().toString();
-        ContentValues values = getContentValues(crime);
+        Crime snapshot = crime.copy();
+        updateSnapshot(crime, snapshot, Crime.ALL_FIELDS);
+        crime.clearWrittenFields(snapshot, Crime.ALL_FIELDS);
+    }
 
-        mDatabase.update(CrimeTable.NAME, values,
-                CrimeTable.Cols.UUID + " = ?",
-                new String[] { uuidString });
+    /**
+     * Writes only the columns changed since the crime was last read or written.
+     * Returns false, without touching the database, when nothing changed.
+     */
+    public boolean saveCrime(Crime crime) {
+        if (!crime.isDirty()) {
+            return false;
+        }
+        Crime snapshot = crime.copy();
+        updateSnapshot(crime, snapshot, snapshot.getDirtyFields());
+        crime.clearWrittenFields(snapshot, snapshot.getDirtyFields());
+        return true;
     }
 
     public void deleteCrime(Crime crime) {
-        String uuidString = crime.getId().toString();
-        mDatabase.delete(CrimeTable.NAME,
-                CrimeTable.Cols.UUID + " = ?",
-                new String[] { uuidString });
+        deleteCrime(crime.getId());
     }
 
-    private void generateSampleCrimes() {
-        // Check if we already have crimes in the database
-        CrimeDataWrapper dataWrapper = queryCrimes(null, null);
-        int count = dataWrapper.getCount();
-        dataWrapper.close();
+    public void deleteCrime(UUID id) {
+        boolean deleted = getStore().deleteCrime(id);
+        uncache(Collections.singletonList(id));
+        if (deleted) {
+            publishChange(CrimeChange.deleted(id));
+        }
+    }
 
-        if (count > 0) {
-            return; // Already populated
+    // Writes only the solved column, for the list's checkbox
+    public void setCrimeSolved(UUID id, boolean solved) {
+        boolean updated = getStore().setCrimeSolved(id, solved);
+        uncache(Collections.singletonList(id));
+        if (updated) {
+            publishChange(CrimeChange.updated(id));
         }
+    }
+
+    /**
+     * Calls observer on the main thread after each committed write while owner
+     * is started. A bulk write arrives as a single change.
+     */
+    public void observeChanges(LifecycleOwner owner, CrimeChangeBus.Observer observer) {
+        mChangeBus.observe(owner, observer);
+    }
+
+    /**
+     * Reads the first rows of the list as saved after the last write, without
+     * opening the database, or null if there is no usable snapshot. Safe on the
+     * main thread: the file is small and mapped rather than read.
+     */
+    public static CrimePage readListSnapshot(Context context) {
+        return CrimeListSnapshot.read(getListSnapshotFile(context));
+    }
+
+    /**
+     * Compares shown, the snapshot the list was first drawn from (or null),
+     * with the database and saves a new snapshot if they differ. The callback
+     * gets whether shown was current.
+     */
+    public Future<Boolean> reconcileListSnapshotAsync(CrimePage shown, Callback<Boolean> callback) {
+        return submit(() -> {
+            if (mListSnapshotFile == null) {
+                return true;
+            }
+            CrimePage current = getStore().getCrimePage(CrimeQuery.DEFAULT, null, LIST_SNAPSHOT_ROWS);
+            if (shown != null && shown.getCrimes().equals(current.getCrimes())
+                    && (shown.getNextKey() == null) == (current.getNextKey() == null)) {
+                return true;
+            }
+            writeListSnapshot(current);
+            return false;
+        }, callback, true);
+    }
+
+    private static File getListSnapshotFile(Context context) {
+        return new File(context.getFilesDir(), LIST_SNAPSHOT_NAME);
+    }
+
+    // Every committed write goes through here
+    private void publishChange(CrimeChange change) {
+        mChangeBus.publish(change);
+        if (mListSnapshotFile != null && !change.isEmpty()
+                && mListSnapshotQueued.compareAndSet(false, true)) {
+            // Queued behind the writes already issued, so a burst of them is saved once
+            sDatabaseExecutor.execute(() -> {
+                mListSnapshotQueued.set(false);
+                writeListSnapshot(getStore().getCrimePage(CrimeQuery.DEFAULT, null, LIST_SNAPSHOT_ROWS));
+            });
+        }
+    }
+
+    private void writeListSnapshot(CrimePage page) {
+        try {
+            CrimeListSnapshot.write(mListSnapshotFile, page);
+        } catch (IOException e) {
+            // A stale snapshot would be shown on the next start, so drop it
+            Log.w(TAG, "Could not save the crime list snapshot", e);
+            mListSnapshotFile.delete();
+        }
+    }
+
+    public void setCacheCapacity(int capacity) {
+        mCrimeCache.resize(capacity);
+    }
+
+    public int getCacheHitCount() {
+        return mCrimeCache.hitCount();
+    }
+
+    public int getCacheMissCount() {
+        return mCrimeCache.missCount();
+    }
+
+    public int getCacheEvictionCount() {
+        return mCrimeCache.evictionCount();
+    }
+
+    private long getCacheEpoch() {
+        synchronized (mCrimeCache) {
+            return mCacheEpoch;
+        }
+    }
+
+    /**
+     * Caches crime, read from the database when the epoch was epoch, and
+     * returns the instance to hand out. A read that overlapped a write may hold
+     * the row as it was before, so it is returned but not kept.
+     */
+    private Crime cacheRead(Crime crime, long epoch) {
+        synchronized (mCrimeCache) {
+            // Never replace an instance a screen may already be editing
+            Crime previous = mCrimeCache.put(crime.getId(), crime);
+            if (previous != null) {
+                mCrimeCache.put(crime.getId(), previous);
+                return previous;
+            }
+            if (epoch != mCacheEpoch) {
+                mCrimeCache.remove(crime.getId());
+            }
+            return crime;
+        }
+    }
+
+    // Called by writes after they commit, on the database thread
+    private void cacheWritten(Crime crime) {
+        synchronized (mCrimeCache) {
+            mCacheEpoch++;
+            mCrimeCache.put(crime.getId(), crime);
+        }
+    }
+
+    private void uncache(Collection<UUID> ids) {
+        synchronized (mCrimeCache) {
+            mCacheEpoch++;
+            for (UUID id : ids) {
+                mCrimeCache.remove(id);
+            }
+        }
+    }
+
+    // snapshot holds the values to write; crime is the instance handed out and cached
+    private void insertSnapshot(Crime crime, Crime snapshot) {
+        boolean inserted = getStore().insertCrime(snapshot);
+        if (inserted) {
+            cacheWritten(crime);
+            publishChange(CrimeChange.inserted(crime.getId()));
+        } else {
+            // No such row, e.g. deleted by a write queued ahead of this one
+            uncache(Collections.singletonList(crime.getId()));
+        }
+    }
+
+    private void updateSnapshot(Crime crime, Crime snapshot, int fields) {
+        boolean updated = getStore().updateCrime(snapshot, fields);
+        if (updated) {
+            cacheWritten(crime);
+            publishChange(CrimeChange.updated(crime.getId()));
+        } else {
+            // No such row, e.g. deleted by a write queued ahead of this one
+            uncache(Collections.singletonList(crime.getId()));
+        }
+    }
+
+    public void addCrimes(Collection<Crime> crimes) {
+        List<UUID> inserted = getStore().insertCrimes(crimes);
+        // New rows are not cached, so a large import does not flush the rows in use
+        CrimeChange.Builder change = new CrimeChange.Builder();
+        for (Crime crime : crimes) {
+            crime.clearDirtyFields();
+        }
+        for (UUID id : inserted) {
+            change.inserted(id);
+        }
+        // Only reached once the transaction committed; the whole import is one change
+        publishChange(change.build());
+    }
+
+    public void updateCrimes(Collection<Crime> crimes) {
+        List<UUID> updated = getStore().updateCrimes(crimes);
+        CrimeChange.Builder change = new CrimeChange.Builder();
+        List<UUID> ids = new ArrayList<>(crimes.size());
+        for (Crime crime : crimes) {
+            crime.clearDirtyFields();
+            ids.add(crime.getId());
+        }
+        uncache(ids);
+        for (UUID id : updated) {
+            change.updated(id);
+        }
+        publishChange(change.build());
+    }
+
+    public void deleteCrimes(Collection<Crime> crimes) {
+        List<UUID> ids = new ArrayList<>(crimes.size());
+        for (Crime crime : crimes) {
+            ids.add(crime.getId());
+        }
+        List<UUID> deleted = getStore().deleteCrimes(ids);
+        CrimeChange.Builder change = new CrimeChange.Builder();
+        uncache(ids);
+        for (UUID id : deleted) {
+            change.deleted(id);
+        }
+        publishChange(change.build());
+    }
+
+    public Future<List<Crime>> getCrimesAsync(Callback<List<Crime>> callback) {
+        return submitRead(this::getCrimes, callback);
+    }
+
+    public Future<CrimeIdIndex> getCrimeIdIndexAsync(Callback<CrimeIdIndex> callback) {
+        return submitRead(this::getCrimeIdIndex, callback);
+    }
+
+    public Future<CrimePage> getCrimePageAsync(CrimeQuery query, CrimePage.Key after, int pageSize,
+            Callback<CrimePage> callback) {
+        return submitRead(() -> getCrimePage(query, after, pageSize), callback);
+    }
+
+    public Future<List<CrimePage>> getCrimePagesAsync(CrimeQuery query, int pageCount, int pageSize,
+            Set<Integer> materialize, Callback<List<CrimePage>> callback) {
+        return submitRead(() -> getCrimePages(query, pageCount, pageSize, materialize), callback);
+    }
+
+    public Future<List<CrimeSummary>> searchCrimesAsync(String query, int limit,
+            Callback<List<CrimeSummary>> callback) {
+        return submitRead(() -> searchCrimes(query, limit), callback);
+    }
+
+    public Future<List<CrimeSummary>> getCrimeSummariesAsync(Collection<UUID> ids,
+            Callback<List<CrimeSummary>> callback) {
+        return submitRead(() -> getCrimeSummaries(ids), callback);
+    }
+
+    public Future<List<Crime>> prefetchCrimesAsync(Collection<UUID> ids, Callback<List<Crime>> callback) {
+        return submitRead(() -> prefetchCrimes(ids), callback);
+    }
+
+    public Future<Crime> getCrimeAsync(UUID id, Callback<Crime> callback) {
+        return submitRead(() -> getCrime(id), callback);
+    }
+
+    public Future<CrimeStats> getStatsAsync(Callback<CrimeStats> callback) {
+        return submitRead(this::getStats, callback);
+    }
+
+    /**
+     * Async {@link #exportCrimes}. It holds one of the read threads until done,
+     * so cancel it with both the returned Future and {@link CrimeExporter#cancel()}.
+     */
+    public Future<File> exportCrimesAsync(CrimeExporter exporter, File file, Callback<File> callback) {
+        return submitRead(() -> exportCrimes(exporter, file), callback);
+    }
+
+    public Future<Boolean> checkStatsAsync(Callback<Boolean> callback) {
+        return submit(this::checkStats, callback, true);
+    }
+
+    public Future<Crime> addCrimeAsync(Crime crime, Callback<Crime> callback) {
+        // Values are captured on the caller's thread so later edits cannot race the write
+        Crime snapshot = crime.copy();
+        crime.clearDirtyFields();
+        return submit(() -> {
+            try {
+                insertSnapshot(crime, snapshot);
+            } catch (RuntimeException e) {
+                markDirtyFields(crime, snapshot.getDirtyFields());
+                throw e;
+            }
+            return crime;
+        }, callback, false);
+    }
+
+    public Future<Crime> updateCrimeAsync(Crime crime, Callback<Crime> callback) {
+        Crime snapshot = crime.copy();
+        crime.clearDirtyFields();
+        return submit(() -> {
+            try {
+                updateSnapshot(crime, snapshot, Crime.ALL_FIELDS);
+            } catch (RuntimeException e) {
+                markDirtyFields(crime, snapshot.getDirtyFields());
+                throw e;
+            }
+            return crime;
+        }, callback, false);
+    }
+
+    /** Async {@link #saveCrime}; returns null if there was nothing to write. */
+    public Future<Crime> saveCrimeAsync(Crime crime, Callback<Crime> callback) {
+        if (!crime.isDirty()) {
+            return null;
+        }
+        Crime snapshot = crime.copy();
+        crime.clearDirtyFields();
+        return submit(() -> {
+            try {
+                updateSnapshot(crime, snapshot, snapshot.getDirtyFields());
+            } catch (RuntimeException e) {
+                markDirtyFields(crime, snapshot.getDirtyFields());
+                throw e;
+            }
+            return crime;
+        }, callback, false);
+    }
+
+    public Future<Crime> deleteCrimeAsync(Crime crime, Callback<Crime> callback) {
+        return submit(() -> {
+            deleteCrime(crime);
+            return crime;
+        }, callback, false);
+    }
+
+    public Future<UUID> deleteCrimeAsync(UUID id, Callback<UUID> callback) {
+        return submit(() -> {
+            deleteCrime(id);
+            return id;
+        }, callback, false);
+    }
+
+    public Future<UUID> setCrimeSolvedAsync(UUID id, boolean solved, Callback<UUID> callback) {
+        return submit(() -> {
+            setCrimeSolved(id, solved);
+            return id;
+        }, callback, false);
+    }
+
+    // The warm-up: queues the database open on the database thread
+    void queueOpen() {
+        sDatabaseExecutor.execute(this::getStore);
+    }
+
+    // Opens the database on first use; off the database thread this may block on the open
+    private CrimeStore getStore() {
+        CrimeStore store = mStore;
+        if (store == null) {
+            synchronized (this) {
+                store = mStore;
+                if (store == null) {
+                    long start = StartupTrace.begin(StartupTrace.OPEN);
+                    store = new TimedCrimeStore(new SqliteCrimeStore(mHelper.getWritableDatabase()),
+                            sMetrics);
+                    StartupTrace.end(StartupTrace.OPEN, start);
+                    mStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    // Returns -1 once the first list query is done, so later queries are not traced
+    private long beginFirstQuery() {
+        return mFirstQueryDone.get() ? -1 : StartupTrace.begin(StartupTrace.FIRST_QUERY);
+    }
+
+    private void endFirstQuery(long start) {
+        if (start < 0) {
+            return;
+        }
+        StartupTrace.end(StartupTrace.FIRST_QUERY, start);
+        if (mFirstQueryDone.compareAndSet(false, true)) {
+            sDatabaseExecutor.execute(this::generateSampleCrimes);
+        }
+    }
+
+    private static <T> Future<T> submit(Callable<T> work, Callback<T> callback, boolean abortable) {
+        CallbackTask<T> task = new CallbackTask<>(work, callback, abortable);
+        sDatabaseExecutor.execute(task);
+        return task;
+    }
+
+    // Reads only; they may run before writes queued ahead of them have committed
+    private static <T> Future<T> submitRead(Callable<T> work, Callback<T> callback) {
+        CallbackTask<T> task = new CallbackTask<>(work, callback, true);
+        sReadExecutor.execute(task);
+        return task;
+    }
+
+    private void generateSampleCrimes() {
+        long start = StartupTrace.begin(StartupTrace.SEED);
+        try {
+            // The rollup answers without scanning the table
+            if (getStore().getStats().getTotal() == 0) {
+                addCrimes(newSampleCrimes());
+            }
+        } finally {
+            StartupTrace.end(StartupTrace.SEED, start);
+        }
+    }
+
+    private static List<Crime> newSampleCrimes() {
 
         String[] crimeTypes = {
                 "Armed Robbery", "Burglary", "Assault", "Fraud", "Drug Trafficking",
@@ -120,6 +764,7 @@ public class CrimeLab {
                 "Morgan Jackson", "Quinn Martin", "Parker Lee", "Blake Hall", "Avery Young"
         };
 
+        List<Crime> crimes = new ArrayList<>(100);
         for (int i = 0; i < 100; i++) {
             Crime crime = new Crime();
             crime.setTitle(crimeTypes[i % crimeTypes.length] + " - " + locations[i % locations.length]);
@@ -127,37 +772,27 @@ public class CrimeLab {
                     System.currentTimeMillis() - (long) (Math.random() * 365 * 24 * 60 * 60 * 1000)));
             crime.setSolved(Math.random() > 0.6); // 40% solved
             crime.setSuspect(suspects[i % suspects.length]);
-            addCrime(crime);
+            crimes.add(crime);
         }
+        return crimes;
     }
 
-    private CrimeDataWrapper queryCrimes(String whereClause, String[] whereArgs) {
-        Cursor dataResult = mDatabase.query(
-                CrimeTable.NAME,
-                null, // Columns - null selects all columns
-                whereClause,
-                whereArgs,
-                null, // groupBy
-                null, // having
-                null // orderBy
-        );
-
-        return new CrimeDataWrapper(dataResult);
-    }
-
-    private static ContentValues getContentValues(Crime crime) {
-        ContentValues values = new ContentValues();
-        values.put(CrimeTable.Cols.UUID, crime.getId().toString());
-        values.put(CrimeTable.Cols.TITLE, crime.getTitle());
-        values.put(CrimeTable.Cols.DATE, crime.getDate().getTime());
-        values.put(CrimeTable.Cols.SOLVED, crime.isSolved() ? 1 : 0);
-        values.put(CrimeTable.Cols.SUSPECT, crime.getSuspect());
-
-        return values;
+    // Async writes clear the bits when they take their snapshot, so a second
+    // save queued before the first commits finds nothing to write. A failed
+    // write puts them back for the next save, on the main thread that owns the crime.
+    private static void markDirtyFields(Crime crime, int fields) {
+        sMainHandler.post(() -> crime.markDirtyFields(fields));
     }
 
     public File getPhotoFile(Crime crime) {
         File filesDir = mContext.getFilesDir();
         return new File(filesDir, crime.getPhotoFilename());
     }
+
+    // Under files/, which the FileProvider already shares
+    public File getExportFile(CrimeExporter.Format format) {
+        File exportDir = new File(mContext.getFilesDir(), "exports");
+        exportDir.mkdirs();
+        return new File(exportDir, "crimes" + format.getExtension());
+    }
 }
@@ -3,20 +3,39 @@ package com.example.criminalintent;
 import android.os.Bundle;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.widget.EditText;
 import android.widget.Toast;
+import androidx.appcompat.app.AlertDialog;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import android.content.Intent;
+import android.net.Uri;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class CrimeListActivity extends AppCompatActivity {
+    private static final long RECENT_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private Future<CrimeStats> mStatsRequest;
+    private CrimeExporter mExporter;
+    private Future<File> mExportRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,6 +54,11 @@ public class CrimeListActivity extends AppCompatActivity {
 
         setTitle("Crime List - " + getString(R.string.app_name));
 
+        // The counts come from rollups, so re-reading them on every change is cheap
+        CrimeLab crimeLab = CrimeLab.get(this);
+        updateStats(crimeLab);
+        crimeLab.observeChanges(this, change -> updateStats(crimeLab));
+
         FragmentManager fm = getSupportFragmentManager();
         Fragment fragment = fm.findFragmentById(R.id.fragment_container);
 
@@ -46,15 +70,150 @@ public class CrimeListActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mStatsRequest != null) {
+            mStatsRequest.cancel(false);
+        }
+        cancelExport();
+    }
+
+    /**
+     * Adds the persistence metrics to
+     * {@code adb shell dumpsys activity com.example.criminalintent/.CrimeListActivity}.
+     * Pass {@code --slow-ms N} after it to change the slow log threshold, or
+     * {@code --reset-metrics} to start counting again after this dump.
+     */
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer,
+            @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        CrimeMetrics metrics = CrimeLab.getMetrics();
+        boolean reset = false;
+        for (int i = 0; args != null && i < args.length; i++) {
+            if ("--reset-metrics".equals(args[i])) {
+                reset = true;
+            } else if ("--slow-ms".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    metrics.setSlowThresholdMillis(Long.parseLong(args[++i]));
+                } catch (NumberFormatException e) {
+                    writer.println(prefix + "Bad --slow-ms value: " + args[i]);
+                }
+            }
+        }
+        metrics.dump(prefix, writer);
+        if (reset) {
+            metrics.reset();
+        }
+    }
+
+    private void updateStats(CrimeLab crimeLab) {
+        if (mStatsRequest != null) {
+            mStatsRequest.cancel(false);
+        }
+        mStatsRequest = crimeLab.getStatsAsync(stats -> getSupportActionBar().setSubtitle(
+                getString(R.string.crime_stats_subtitle,
+                        stats.getTotal(), stats.getSolved(), stats.getUnsolved())));
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.toolbar_menu, menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // Each keystroke re-queries; the FTS lookup is cheap enough for that
+                Fragment fragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+                if (fragment instanceof CrimeListFragment) {
+                    ((CrimeListFragment) fragment).setSearchQuery(newText);
+                }
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        CrimeListFragment fragment = getListFragment();
+        if (fragment != null) {
+            CrimeQuery query = fragment.getQuery();
+            int sortId;
+            if (query.getSort() == CrimeQuery.Sort.TITLE) {
+                sortId = query.isAscending() ? R.id.sort_title_asc : R.id.sort_title_desc;
+            } else {
+                sortId = query.isAscending() ? R.id.sort_oldest : R.id.sort_newest;
+            }
+            menu.findItem(sortId).setChecked(true);
+            int showId = query.getSolved() == CrimeQuery.SolvedFilter.SOLVED ? R.id.show_solved
+                    : query.getSolved() == CrimeQuery.SolvedFilter.UNSOLVED ? R.id.show_unsolved
+                    : R.id.show_all;
+            menu.findItem(showId).setChecked(true);
+            menu.findItem(R.id.action_last_30_days).setChecked(query.hasDateRange());
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
+        CrimeListFragment fragment = getListFragment();
+        if (fragment != null) {
+            CrimeQuery.Builder query = fragment.getQuery().buildUpon();
+            boolean changed = true;
+            int id = item.getItemId();
+            if (id == R.id.sort_newest) {
+                query.sortBy(CrimeQuery.Sort.DATE, false);
+            } else if (id == R.id.sort_oldest) {
+                query.sortBy(CrimeQuery.Sort.DATE, true);
+            } else if (id == R.id.sort_title_asc) {
+                query.sortBy(CrimeQuery.Sort.TITLE, true);
+            } else if (id == R.id.sort_title_desc) {
+                query.sortBy(CrimeQuery.Sort.TITLE, false);
+            } else if (id == R.id.show_all) {
+                query.solved(CrimeQuery.SolvedFilter.ANY);
+            } else if (id == R.id.show_unsolved) {
+                query.solved(CrimeQuery.SolvedFilter.UNSOLVED);
+            } else if (id == R.id.show_solved) {
+                query.solved(CrimeQuery.SolvedFilter.SOLVED);
+            } else if (id == R.id.action_last_30_days) {
+                if (item.isChecked()) {
+                    query.anyDate();
+                } else {
+                    // Open-ended, so crimes dated later today still show
+                    query.dateRange(System.currentTimeMillis() - RECENT_MILLIS, Long.MAX_VALUE);
+                }
+            } else {
+                changed = false;
+            }
+            if (changed) {
+                fragment.setQuery(query.build());
+                invalidateOptionsMenu();
+                return true;
+            }
+            if (id == R.id.action_filter_suspect) {
+                showSuspectFilter(fragment);
+                return true;
+            }
+        }
+        if (item.getItemId() == R.id.action_export_csv) {
+            exportCrimes(CrimeExporter.Format.CSV);
+            return true;
+        }
+        if (item.getItemId() == R.id.action_export_json) {
+            exportCrimes(CrimeExporter.Format.JSON);
+            return true;
+        }
         if (item.getItemId() == R.id.action_plus) {
             // Create a new crime
             Crime crime = new Crime();
@@ -62,15 +221,74 @@ public class CrimeListActivity extends AppCompatActivity {
             crime.setDate(new java.util.Date());
             crime.setSolved(false);
 
-            // Add to CrimeLab
-            CrimeLab.get(this).addCrime(crime);
-
-            // Navigate to the new crime for editing
-            Intent intent = CrimePagerActivity.newIntent(this, crime.getId());
-            startActivity(intent);
+            // Add to CrimeLab, then navigate to the new crime for editing once the
+            // insert has committed so the pager's reads can see it
+            CrimeLab.get(this).addCrimeAsync(crime, added -> {
+                Intent intent = CrimePagerActivity.newIntent(this, added.getId());
+                startActivity(intent);
+            });
 
             return true;
         }
         return super.onOptionsItemSelected(item);
     }
+
+    private CrimeListFragment getListFragment() {
+        Fragment fragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+        return fragment instanceof CrimeListFragment ? (CrimeListFragment) fragment : null;
+    }
+
+    private void showSuspectFilter(CrimeListFragment fragment) {
+        EditText input = new EditText(this);
+        input.setSingleLine();
+        input.setHint(R.string.filter_suspect_hint);
+        String suspect = fragment.getQuery().getSuspect();
+        if (suspect != null) {
+            input.setText(suspect);
+            input.setSelection(suspect.length());
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter_suspect)
+                .setView(input)
+                .setPositiveButton(R.string.filter, (dialog, which) -> fragment.setQuery(
+                        fragment.getQuery().buildUpon().suspect(input.getText().toString()).build()))
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void exportCrimes(CrimeExporter.Format format) {
+        cancelExport();
+        CrimeLab crimeLab = CrimeLab.get(this);
+        CrimeExporter exporter = new CrimeExporter(format);
+        // Progress arrives on a read thread, once per chunk
+        exporter.setProgressListener((rows, totalRows, bytes) -> runOnUiThread(() -> {
+            if (mExporter == exporter) {
+                int percent = totalRows == 0 ? 100 : (int) (rows * 100 / totalRows);
+                getSupportActionBar().setSubtitle(getString(R.string.export_progress, percent));
+            }
+        }));
+        mExporter = exporter;
+        mExportRequest = crimeLab.exportCrimesAsync(exporter, crimeLab.getExportFile(format), file -> {
+            mExporter = null;
+            updateStats(crimeLab);
+            shareExport(file, format);
+        });
+    }
+
+    private void cancelExport() {
+        if (mExporter != null) {
+            mExporter.cancel();
+            mExportRequest.cancel(false);
+            mExporter = null;
+        }
+    }
+
+    private void shareExport(File file, CrimeExporter.Format format) {
+        Uri uri = FileProvider.getUriForFile(this, "com.example.criminalintent.fileprovider", file);
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(format.getMimeType());
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, getString(R.string.export_share)));
+    }
 }
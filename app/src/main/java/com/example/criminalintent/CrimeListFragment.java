@@ -6,28 +6,55 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
+import android.widget.CompoundButton;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.fragment.app.FragmentManager;
 import androidx.appcompat.app.AlertDialog;
 
-import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
 
 public class CrimeListFragment extends Fragment {
+    // Rows per keyset page and how many pages may stay in memory at once
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_RESIDENT_PAGES = 6;
+    private static final int SEARCH_LIMIT = 200;
+    private static final String SAVED_QUERY = "query";
+
     private RecyclerView mCrimeRecyclerView;
     private CrimeAdapter mAdapter;
+    private CrimePagedList mCrimes;
+    // Sort and filters chosen from the toolbar; kept across configuration changes
+    private CrimeQuery mQuery = CrimeQuery.DEFAULT;
+    // Non-null while the list shows search results instead of the paged list
+    private String mSearchQuery;
+    private final PendingRequests mSearchRequests = new PendingRequests();
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            CrimeQuery query = (CrimeQuery) savedInstanceState.getSerializable(SAVED_QUERY);
+            if (query != null) {
+                mQuery = query;
+            }
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putSerializable(SAVED_QUERY, mQuery);
     }
 
     @Nullable
@@ -41,7 +68,22 @@ public class CrimeListFragment extends Fragment {
 
         // Context menu is handled through the adapter
 
-        updateUI();
+        // Rows saved after the last write are drawn in the first frame, then
+        // replaced by the refresh below and checked against the database. The
+        // snapshot only holds the default order, so other queries start empty.
+        CrimePage saved = CrimeLab.readListSnapshot(getActivity());
+        mAdapter = new CrimeAdapter();
+        mCrimes = new CrimePagedList(CrimeLab.get(getActivity()), mQuery, PAGE_SIZE, MAX_RESIDENT_PAGES,
+                mAdapter);
+        mCrimeRecyclerView.setAdapter(mAdapter);
+        if (saved != null) {
+            mCrimes.seed(saved);
+        }
+
+        mCrimes.refresh();
+        CrimeLab.get(getActivity()).reconcileListSnapshotAsync(saved, null);
+        // Rows are patched as writes commit, so coming back to the list reloads nothing
+        CrimeLab.get(getActivity()).observeChanges(getViewLifecycleOwner(), this::onCrimesChanged);
 
         return view;
     }
@@ -49,7 +91,6 @@ public class CrimeListFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        updateUI();
 
         // Show a brief message when returning from crime detail
         if (getActivity() != null) {
@@ -57,21 +98,71 @@ public class CrimeListFragment extends Fragment {
         }
     }
 
-    private void updateUI() {
-        CrimeLab crimeLab = CrimeLab.get(getActivity());
-        List<Crime> crimes = crimeLab.getCrimes();
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mCrimes.cancel();
+        mSearchRequests.cancelAll();
+        mCrimes = null;
+        mAdapter = null;
+    }
+
+    private void onCrimesChanged(CrimeChange change) {
+        mCrimes.onCrimesChanged(change);
+        if (mSearchQuery != null) {
+            runSearch();
+        }
+    }
 
+    public CrimeQuery getQuery() {
+        return mQuery;
+    }
+
+    /** Sorts and filters the list by query; search results are not affected. */
+    public void setQuery(CrimeQuery query) {
+        mQuery = query;
+        if (mCrimes != null) {
+            mCrimes.setQuery(query);
+        }
+    }
+
+    /** Shows crimes matching query in place of the full list; an empty query goes back to it. */
+    public void setSearchQuery(String query) {
         if (mAdapter == null) {
-            mAdapter = new CrimeAdapter(crimes);
-            mCrimeRecyclerView.setAdapter(mAdapter);
-        } else {
-            mAdapter.notifyDataSetChanged();
+            return;
+        }
+        String trimmed = query != null ? query.trim() : "";
+        if (trimmed.isEmpty()) {
+            if (mSearchQuery != null) {
+                mSearchQuery = null;
+                mSearchRequests.cancelAll();
+                mAdapter.onChanged();
+            }
+            return;
+        }
+        if (!trimmed.equals(mSearchQuery)) {
+            mSearchQuery = trimmed;
+            runSearch();
         }
+    }
 
+    private void runSearch() {
+        // Only the latest query's results are wanted
+        mSearchRequests.cancelAll();
+        mSearchRequests.add(CrimeLab.get(getActivity()).searchCrimesAsync(mSearchQuery, SEARCH_LIMIT,
+                crimes -> {
+                    if (mAdapter != null && mSearchQuery != null) {
+                        mAdapter.submitList(crimes);
+                    }
+                }));
+    }
+
+    private void onFirstPageShown() {
         // Show first crime in landscape mode if detail container exists
-        if (getActivity().findViewById(R.id.detail_fragment_container) != null && !crimes.isEmpty()) {
+        CrimeSummary first = mAdapter.getCrimeAtPosition(0);
+        if (getActivity().findViewById(R.id.detail_fragment_container) != null && first != null) {
             FragmentManager fm = getActivity().getSupportFragmentManager();
-            Fragment detailFragment = CrimeFragment.newInstance(crimes.get(0).getId());
+            Fragment detailFragment = CrimeFragment.newInstance(first.getId());
             fm.beginTransaction()
                     .replace(R.id.detail_fragment_container, detailFragment)
                     .commit();
@@ -98,12 +189,15 @@ public class CrimeListFragment extends Fragment {
      * }
      */
 
+    // Our part of binding allocates nothing: the holder is its own listener and
+    // dates come from a cache. What TextView and CheckBox do inside is not measured.
     private class CrimeHolder extends RecyclerView.ViewHolder
-            implements View.OnClickListener, View.OnLongClickListener {
+            implements View.OnClickListener, View.OnLongClickListener,
+            CompoundButton.OnCheckedChangeListener {
         private TextView mTitleTextView;
         private TextView mDateTextView;
         private CheckBox mSolvedCheckBox;
-        private Crime mCrime;
+        private CrimeSummary mCrime;
 
         public CrimeHolder(LayoutInflater inflater, ViewGroup parent) {
             super(inflater.inflate(R.layout.list_item_crime, parent, false));
@@ -115,25 +209,39 @@ public class CrimeListFragment extends Fragment {
             mSolvedCheckBox = itemView.findViewById(R.id.crime_solved);
         }
 
-        public void bind(Crime crime) {
+        public void bind(CrimeSummary crime) {
             mCrime = crime;
+            if (crime == null) {
+                mTitleTextView.setText(null);
+                mDateTextView.setText(null);
+                mSolvedCheckBox.setOnCheckedChangeListener(null);
+                mSolvedCheckBox.setChecked(false);
+                return;
+            }
+
             mTitleTextView.setText(crime.getTitle());
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM, yyyy", Locale.getDefault());
-            mDateTextView.setText(dateFormat.format(crime.getDate()));
+            mDateTextView.setText(CrimeDateFormatter.get().format(crime.getDate()));
 
-            // Remove previous listener to avoid multiple callbacks
+            // Detach while setting the state so rebinding is not taken for a user tap
             mSolvedCheckBox.setOnCheckedChangeListener(null);
             mSolvedCheckBox.setChecked(crime.isSolved());
+            mSolvedCheckBox.setOnCheckedChangeListener(this);
+        }
 
-            // Set up checkbox listener to update the crime when checked/unchecked
-            mSolvedCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                mCrime.setSolved(isChecked);
-                CrimeLab.get(getActivity()).updateCrime(mCrime);
-            });
+        @Override
+        public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            if (mCrime == null) {
+                return;
+            }
+            // The change event patches just this row once the write commits
+            CrimeLab.get(getActivity()).setCrimeSolvedAsync(mCrime.getId(), isChecked, null);
         }
 
         @Override
         public void onClick(View view) {
+            if (mCrime == null) {
+                return;
+            }
             Toast.makeText(getActivity(), mCrime.getTitle() + " clicked!", Toast.LENGTH_SHORT).show();
 
             // Check if we're in landscape mode with detail container
@@ -153,16 +261,16 @@ public class CrimeListFragment extends Fragment {
 
         @Override
         public boolean onLongClick(View view) {
+            if (mCrime == null) {
+                return false;
+            }
+            UUID crimeId = mCrime.getId();
             // Show delete confirmation dialog
             new AlertDialog.Builder(getActivity())
                     .setTitle(getString(R.string.delete_crime_title))
                     .setMessage(getString(R.string.delete_crime_message, mCrime.getTitle()))
                     .setPositiveButton(getString(R.string.delete), (dialog, which) -> {
-                        CrimeLab.get(getActivity()).deleteCrime(mCrime);
-                        // Notify the adapter that data has changed
-                        if (mAdapter != null) {
-                            mAdapter.notifyDataSetChanged();
-                        }
+                        CrimeLab.get(getActivity()).deleteCrimeAsync(crimeId, null);
                         Toast.makeText(getActivity(), getString(R.string.crime_deleted), Toast.LENGTH_SHORT).show();
                     })
                     .setNegativeButton(getString(R.string.cancel), null)
@@ -172,15 +280,33 @@ public class CrimeListFragment extends Fragment {
         }
     }
 
-    private class CrimeAdapter extends RecyclerView.Adapter<CrimeHolder> {
-        private List<Crime> mCrimes;
+    private static final DiffUtil.ItemCallback<CrimeSummary> CRIME_DIFF =
+            new DiffUtil.ItemCallback<CrimeSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CrimeSummary oldCrime, @NonNull CrimeSummary newCrime) {
+            return oldCrime.getRowId() == newCrime.getRowId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CrimeSummary oldCrime, @NonNull CrimeSummary newCrime) {
+            return oldCrime.isSolved() == newCrime.isSolved()
+                    && oldCrime.getDate() == newCrime.getDate()
+                    && Objects.equals(oldCrime.getTitle(), newCrime.getTitle());
+        }
+    };
+
+    // Diffs each CrimePagedList snapshot against the one on screen on a background
+    // thread, so a refresh only rebinds and animates the rows that really changed
+    private class CrimeAdapter extends RecyclerView.Adapter<CrimeHolder>
+            implements CrimePagedList.Listener {
+        private final AsyncListDiffer<CrimeSummary> mDiffer = new AsyncListDiffer<>(this, CRIME_DIFF);
 
-        public CrimeAdapter(List<Crime> crimes) {
-            mCrimes = crimes;
+        public CrimeAdapter() {
+            setHasStableIds(true);
         }
 
-        public Crime getCrimeAtPosition(int position) {
-            return mCrimes.get(position);
+        public CrimeSummary getCrimeAtPosition(int position) {
+            return mDiffer.getCurrentList().get(position);
         }
 
         @NonNull
@@ -192,13 +318,42 @@ public class CrimeListFragment extends Fragment {
 
         @Override
         public void onBindViewHolder(@NonNull CrimeHolder holder, int position) {
-            Crime crime = mCrimes.get(position);
+            // Null while the row's page is still loading; it is rebound once it arrives
+            CrimeSummary crime = getCrimeAtPosition(position);
             holder.bind(crime);
+            if (mSearchQuery == null) {
+                mCrimes.loadAround(position);
+            }
         }
 
         @Override
         public int getItemCount() {
-            return mCrimes.size();
+            return mDiffer.getCurrentList().size();
+        }
+
+        @Override
+        public long getItemId(int position) {
+            CrimeSummary crime = getCrimeAtPosition(position);
+            // Placeholders get negative ids so they never collide with a row _id
+            return crime != null ? crime.getRowId() : -1 - position;
+        }
+
+        public void submitList(List<CrimeSummary> crimes) {
+            mDiffer.submitList(crimes);
+        }
+
+        @Override
+        public void onChanged() {
+            if (mSearchQuery != null) {
+                // Pages keep loading underneath so the list is current once search closes
+                return;
+            }
+            boolean wasEmpty = getItemCount() == 0;
+            mDiffer.submitList(mCrimes.snapshot(), () -> {
+                if (wasEmpty && mCrimes != null && getItemCount() > 0) {
+                    onFirstPageShown();
+                }
+            });
         }
     }
-}
\ No newline at end of file
+}
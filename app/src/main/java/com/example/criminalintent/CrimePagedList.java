@@ -0,0 +1,304 @@
+package com.example.criminalintent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Windowed view of the crimes matching a {@link CrimeQuery} that loads
+ * fixed-size pages through {@link CrimeLab#getCrimePageAsync} as positions are
+ * requested. At most
+ * maxResidentPages pages are kept in memory; positions in an evicted page read
+ * as null until the page has been loaded again from its saved keyset key.
+ * Only used from the main thread.
+ */
+public class CrimePagedList {
+    // More updated rows than this are cheaper to pick up with one refresh
+    private static final int MAX_PATCHED_ROWS = 100;
+
+    public interface Listener {
+        // Called whenever snapshot() would return something different
+        void onChanged();
+    }
+
+    private final CrimeLab mCrimeLab;
+    private final int mPageSize;
+    private final int mMaxResidentPages;
+    private final Listener mListener;
+    private final PendingRequests mRequests = new PendingRequests();
+
+    // Start key of every page reached so far; page 0 starts before the first row
+    private final List<CrimePage.Key> mPageKeys = new ArrayList<>();
+    private final Map<Integer, List<CrimeSummary>> mResidentPages;
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    private CrimeQuery mQuery;
+    private int mSize;
+    private boolean mEndReached;
+    private boolean mRefreshing;
+    // Patch reads not yet delivered; they may finish out of order on the read pool
+    private int mPatchesInFlight;
+
+    public CrimePagedList(CrimeLab crimeLab, CrimeQuery query, int pageSize, int maxResidentPages,
+            Listener listener) {
+        mCrimeLab = crimeLab;
+        mQuery = query;
+        mPageSize = pageSize;
+        mMaxResidentPages = maxResidentPages;
+        mListener = listener;
+        mResidentPages = new LinkedHashMap<>(maxResidentPages + 1, 0.75f, true);
+        mPageKeys.add(null);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public CrimeQuery getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * Switches to the crimes matching query and reads its first page. The old
+     * contents stay visible until that page arrives.
+     */
+    public void setQuery(CrimeQuery query) {
+        if (query.equals(mQuery)) {
+            return;
+        }
+        mQuery = query;
+        mRequests.cancelAll();
+        mLoadingPages.clear();
+        mPatchesInFlight = 0;
+        if (mSize == 0 && mResidentPages.isEmpty()) {
+            refresh();
+            return;
+        }
+        mRefreshing = true;
+        mRequests.add(mCrimeLab.getCrimePagesAsync(mQuery, 1, mPageSize, Collections.singleton(0),
+                this::onPagesReloaded));
+    }
+
+    /** Returns the crime at position, or null if its page is not resident. */
+    public CrimeSummary get(int position) {
+        int pageIndex = position / mPageSize;
+        List<CrimeSummary> page = mResidentPages.get(pageIndex);
+        if (page == null) {
+            return null;
+        }
+        int offset = position - pageIndex * mPageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Schedules the page holding position if it is not resident and, near the
+     * end of what has been read so far, the next page.
+     */
+    public void loadAround(int position) {
+        if (!mEndReached && position >= mSize - mPageSize / 2) {
+            loadPage(mPageKeys.size() - 1);
+        }
+        loadPage(position / mPageSize);
+    }
+
+    /**
+     * Copies the current window into a new list of size() entries, with null
+     * for positions whose page is not resident. The copy never changes, so it
+     * can be diffed against a later snapshot on another thread.
+     */
+    public List<CrimeSummary> snapshot() {
+        CrimeSummary[] crimes = new CrimeSummary[mSize];
+        for (Map.Entry<Integer, List<CrimeSummary>> page : mResidentPages.entrySet()) {
+            int start = page.getKey() * mPageSize;
+            List<CrimeSummary> pageCrimes = page.getValue();
+            for (int i = 0; i < pageCrimes.size() && start + i < mSize; i++) {
+                crimes[start + i] = pageCrimes.get(i);
+            }
+        }
+        return Arrays.asList(crimes);
+    }
+
+    /**
+     * Shows saved, the first rows of the list as last seen, before anything has
+     * been read; only whole pages are used unless saved reaches the end of the
+     * list. Call {@link #refresh()} afterwards to replace them with the current
+     * rows. Does nothing once the list has contents, or under a query other
+     * than the default, whose rows the snapshot does not hold.
+     */
+    public void seed(CrimePage saved) {
+        if (!mQuery.equals(CrimeQuery.DEFAULT)
+                || mSize > 0 || !mResidentPages.isEmpty() || !mLoadingPages.isEmpty()) {
+            return;
+        }
+        List<CrimeSummary> crimes = saved.getCrimes();
+        int count = saved.getNextKey() == null ? crimes.size() : crimes.size() / mPageSize * mPageSize;
+        count = Math.min(count, mMaxResidentPages * mPageSize);
+        if (count == 0) {
+            return;
+        }
+
+        for (int start = 0; start < count; start += mPageSize) {
+            List<CrimeSummary> page = new ArrayList<>(crimes.subList(start, Math.min(start + mPageSize, count)));
+            mResidentPages.put(start / mPageSize, page);
+            // Same bookkeeping as onPageLoaded: a full page may have a next one
+            if (page.size() == mPageSize) {
+                mPageKeys.add(CrimePage.Key.of(page.get(page.size() - 1)));
+            } else {
+                mEndReached = true;
+            }
+        }
+        mSize = count;
+        mListener.onChanged();
+    }
+
+    /**
+     * Re-reads every page reached so far in one query, keeping the same pages
+     * resident. Until the result arrives the old contents stay visible.
+     */
+    public void refresh() {
+        mRequests.cancelAll();
+        mLoadingPages.clear();
+        mPatchesInFlight = 0;
+        if (mSize == 0 && mResidentPages.isEmpty()) {
+            mRefreshing = false;
+            mPageKeys.clear();
+            mPageKeys.add(null);
+            mEndReached = false;
+            loadPage(0);
+            return;
+        }
+
+        mRefreshing = true;
+        Set<Integer> materialize = new HashSet<>(mResidentPages.keySet());
+        mRequests.add(mCrimeLab.getCrimePagesAsync(mQuery, mPageKeys.size(), mPageSize, materialize,
+                this::onPagesReloaded));
+    }
+
+    /**
+     * Brings the window up to date after a committed write. Updates are patched
+     * into resident pages row by row; inserts, deletes and edits that move a row
+     * under the current query (see {@link CrimeQuery#keepsPosition}) fall back
+     * to {@link #refresh()}.
+     */
+    public void onCrimesChanged(CrimeChange change) {
+        if (change.hasStructuralChanges() || change.getUpdated().size() > MAX_PATCHED_ROWS
+                || mRefreshing || !mLoadingPages.isEmpty() || mPatchesInFlight > 0) {
+            // Reads run beside the writer, so one in flight may have started
+            // before this write committed and would overwrite a patch with old rows
+            refresh();
+            return;
+        }
+        mPatchesInFlight++;
+        mRequests.add(mCrimeLab.getCrimeSummariesAsync(change.getUpdated(), crimes -> {
+            mPatchesInFlight--;
+            patchCrimes(crimes);
+        }));
+    }
+
+    public void cancel() {
+        mRequests.cancelAll();
+        mLoadingPages.clear();
+        mPatchesInFlight = 0;
+        mRefreshing = false;
+    }
+
+    private void loadPage(int pageIndex) {
+        if (mRefreshing || pageIndex >= mPageKeys.size() || mLoadingPages.contains(pageIndex)
+                || mResidentPages.containsKey(pageIndex)) {
+            return;
+        }
+        mLoadingPages.add(pageIndex);
+        mRequests.add(mCrimeLab.getCrimePageAsync(mQuery, mPageKeys.get(pageIndex), mPageSize,
+                page -> onPageLoaded(pageIndex, page)));
+    }
+
+    private void onPageLoaded(int pageIndex, CrimePage page) {
+        mLoadingPages.remove(pageIndex);
+        mResidentPages.put(pageIndex, page.getCrimes());
+        evictPages(pageIndex);
+
+        int start = pageIndex * mPageSize;
+        if (start == mSize) {
+            // Every earlier page was full, so a first read of the last page extends the list
+            if (page.getNextKey() == null) {
+                mEndReached = true;
+            } else {
+                mPageKeys.add(page.getNextKey());
+            }
+            mSize = start + page.size();
+        }
+        mListener.onChanged();
+    }
+
+    private void onPagesReloaded(List<CrimePage> pages) {
+        mRefreshing = false;
+        mPageKeys.clear();
+        mPageKeys.add(null);
+        mResidentPages.clear();
+        mEndReached = false;
+        mSize = 0;
+
+        for (int i = 0; i < pages.size(); i++) {
+            CrimePage page = pages.get(i);
+            if (page.getCrimes() != null) {
+                mResidentPages.put(i, page.getCrimes());
+            }
+            mSize += page.size();
+            if (page.getNextKey() == null) {
+                mEndReached = true;
+                break;
+            }
+            mPageKeys.add(page.getNextKey());
+        }
+        mListener.onChanged();
+    }
+
+    private void patchCrimes(List<CrimeSummary> crimes) {
+        Map<Long, CrimeSummary> byRowId = new HashMap<>();
+        for (CrimeSummary crime : crimes) {
+            byRowId.put(crime.getRowId(), crime);
+        }
+
+        int patchedCount = 0;
+        for (List<CrimeSummary> page : mResidentPages.values()) {
+            for (int i = 0; i < page.size(); i++) {
+                CrimeSummary patched = byRowId.get(page.get(i).getRowId());
+                if (patched == null) {
+                    continue;
+                }
+                if (!mQuery.keepsPosition(page.get(i), patched)) {
+                    // The row moved in list order or left the results
+                    refresh();
+                    return;
+                }
+                page.set(i, patched);
+                patchedCount++;
+            }
+        }
+        if (patchedCount < crimes.size()) {
+            // A row outside the window may have moved across page boundaries; re-read them
+            refresh();
+        } else if (patchedCount > 0) {
+            mListener.onChanged();
+        }
+    }
+
+    private void evictPages(int keepPageIndex) {
+        Iterator<Integer> iterator = mResidentPages.keySet().iterator();
+        while (mResidentPages.size() > mMaxResidentPages && iterator.hasNext()) {
+            if (iterator.next() != keepPageIndex) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -13,19 +13,27 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
-import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentStatePagerAdapter;
 import androidx.viewpager2.adapter.FragmentStateAdapter;
 import androidx.viewpager2.widget.ViewPager2;
 
-import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 public class CrimePagerActivity extends AppCompatActivity {
     private static final String EXTRA_CRIME_ID = "com.example.criminalintent.crime_id";
+    // Pages warmed on each side of the one on screen
+    private static final int PREFETCH_DEPTH = 3;
 
     private ViewPager2 mViewPager;
-    private List<Crime> mCrimes;
+    // Ids only; each page's CrimeFragment loads its own crime when it is created
+    private CrimeIdIndex mCrimeIds;
+    private CrimePagerAdapter mAdapter;
+    private CrimePrefetcher mPrefetcher;
+    private final PendingRequests mRequests = new PendingRequests();
+    // Index reads run on a pool and may finish out of order, so only the latest
+    // is kept; null once its result has been delivered
+    private Future<CrimeIdIndex> mIdIndexRequest;
 
     public static Intent newIntent(Context packageContext, UUID crimeId) {
         Intent intent = new Intent(packageContext, CrimePagerActivity.class);
@@ -51,31 +59,18 @@ public class CrimePagerActivity extends AppCompatActivity {
         UUID crimeId = (UUID) getIntent().getSerializableExtra(EXTRA_CRIME_ID);
 
         mViewPager = findViewById(R.id.crime_pager_view_pager);
-        mCrimes = CrimeLab.get(this).getCrimes();
-
-        FragmentManager fragmentManager = getSupportFragmentManager();
-        mViewPager.setAdapter(new FragmentStateAdapter(this) {
-            @NonNull
-            @Override
-            public Fragment createFragment(int position) {
-                Crime crime = mCrimes.get(position);
-                return CrimeFragment.newInstance(crime.getId());
-            }
-
+        mPrefetcher = new CrimePrefetcher(this, PREFETCH_DEPTH);
+        mViewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
             @Override
-            public int getItemCount() {
-                return mCrimes.size();
+            public void onPageSelected(int position) {
+                if (mCrimeIds != null) {
+                    mPrefetcher.prefetchAround(mCrimeIds, position);
+                }
             }
         });
+        loadCrimeIds(crimeIds -> showCrimes(crimeIds, crimeId));
+        CrimeLab.get(this).observeChanges(this, this::onCrimesChanged);
 
-        // Set the current item to the crime that was clicked
-        for (int i = 0; i < mCrimes.size(); i++) {
-            if (mCrimes.get(i).getId().equals(crimeId)) {
-                mViewPager.setCurrentItem(i);
-                break;
-            }
-        }
-        
         // Set the title
         setTitle("Crime Details - " + getString(R.string.app_name));
         
@@ -85,6 +80,103 @@ public class CrimePagerActivity extends AppCompatActivity {
         }
     }
     
+    private void showCrimes(CrimeIdIndex crimeIds, UUID crimeId) {
+        mCrimeIds = crimeIds;
+
+        mAdapter = new CrimePagerAdapter(this);
+        mViewPager.setAdapter(mAdapter);
+
+        // Set the current item to the crime that was clicked
+        int position = mCrimeIds.indexOf(crimeId);
+        if (position >= 0) {
+            mViewPager.setCurrentItem(position, false);
+        }
+    }
+
+    private void loadCrimeIds(CrimeLab.Callback<CrimeIdIndex> callback) {
+        if (mIdIndexRequest != null) {
+            mIdIndexRequest.cancel(false);
+        }
+        mIdIndexRequest = mRequests.add(CrimeLab.get(this).getCrimeIdIndexAsync(crimeIds -> {
+            mIdIndexRequest = null;
+            callback.onResult(crimeIds);
+        }));
+    }
+
+    // Each page keeps its own crime current, so only rows coming or going matter here
+    private void onCrimesChanged(CrimeChange change) {
+        if (!change.hasStructuralChanges()) {
+            return;
+        }
+        if (mCrimeIds == null) {
+            // The first read may have started before this write committed
+            UUID crimeId = (UUID) getIntent().getSerializableExtra(EXTRA_CRIME_ID);
+            loadCrimeIds(crimeIds -> showCrimes(crimeIds, crimeId));
+            return;
+        }
+
+        if (change.getInserted().isEmpty() && mIdIndexRequest == null) {
+            // Deletions need no query: drop the pages in place
+            for (UUID id : change.getDeleted()) {
+                int position = mCrimeIds.indexOf(id);
+                if (position >= 0) {
+                    mCrimeIds.remove(position);
+                    mAdapter.notifyItemRemoved(position);
+                }
+            }
+            return;
+        }
+
+        // New rows need their list position, and a read in flight may predate
+        // this write, so re-read the order; stable ids let the adapter keep
+        // every page that is still there
+        UUID currentId = mViewPager.getCurrentItem() < mCrimeIds.size()
+                ? mCrimeIds.getId(mViewPager.getCurrentItem()) : null;
+        loadCrimeIds(crimeIds -> {
+            mCrimeIds = crimeIds;
+            mAdapter.notifyDataSetChanged();
+            int position = mCrimeIds.indexOf(currentId);
+            if (position >= 0) {
+                mViewPager.setCurrentItem(position, false);
+            }
+        });
+    }
+
+    private class CrimePagerAdapter extends FragmentStateAdapter {
+        CrimePagerAdapter(FragmentActivity activity) {
+            super(activity);
+        }
+
+        @NonNull
+        @Override
+        public Fragment createFragment(int position) {
+            return CrimeFragment.newInstance(mCrimeIds.getId(position));
+        }
+
+        @Override
+        public int getItemCount() {
+            return mCrimeIds.size();
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mCrimeIds.getRowId(position);
+        }
+
+        @Override
+        public boolean containsItem(long itemId) {
+            return mCrimeIds.indexOfRowId(itemId) >= 0;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mRequests.cancelAll();
+        mPrefetcher.cancel();
+        mPrefetcher.report();
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         onBackPressed();
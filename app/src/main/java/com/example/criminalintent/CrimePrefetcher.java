@@ -0,0 +1,112 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * Warms up the pages around the one on screen: the crimes depth positions
+ * either side are read with one IN query into CrimeLab's cache and their
+ * thumbnails are decoded into ThumbnailCache, so a CrimeFragment created by a
+ * swipe can bind without waiting. Only used from the main thread.
+ */
+public class CrimePrefetcher {
+    private static final String TAG = "CrimePrefetcher";
+
+    private final CrimeLab mCrimeLab;
+    private final ThumbnailCache mThumbnailCache;
+    private final int mThumbnailSize;
+    private final PendingRequests mRequests = new PendingRequests();
+    private int mDepth;
+
+    // Counter values when this prefetcher started, so report() covers only its own screen
+    private final int mPeekHitsAtStart;
+    private final int mPeekMissesAtStart;
+    private final int mThumbnailHitsAtStart;
+    private final int mThumbnailMissesAtStart;
+
+    public CrimePrefetcher(Context context, int depth) {
+        mCrimeLab = CrimeLab.get(context);
+        mThumbnailCache = ThumbnailCache.get(context);
+        mThumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.crime_photo_size);
+        mDepth = depth;
+
+        mPeekHitsAtStart = mCrimeLab.getPeekHitCount();
+        mPeekMissesAtStart = mCrimeLab.getPeekMissCount();
+        mThumbnailHitsAtStart = mThumbnailCache.getLoadHitCount();
+        mThumbnailMissesAtStart = mThumbnailCache.getLoadMissCount();
+    }
+
+    /** Number of pages warmed on each side of the current one; 0 turns prefetching off. */
+    public void setDepth(int depth) {
+        mDepth = depth;
+    }
+
+    /**
+     * Prefetches around position, dropping whatever was still queued for the
+     * previous position: on a fast swipe only the latest neighbours matter.
+     */
+    public void prefetchAround(CrimeIdIndex crimeIds, int position) {
+        mRequests.cancelAll();
+        if (mDepth <= 0) {
+            return;
+        }
+
+        List<UUID> ids = new ArrayList<>(2 * mDepth);
+        for (int distance = 1; distance <= mDepth; distance++) {
+            // Nearest first, alternating sides
+            if (position + distance < crimeIds.size()) {
+                ids.add(crimeIds.getId(position + distance));
+            }
+            if (position - distance >= 0) {
+                ids.add(crimeIds.getId(position - distance));
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        mRequests.add(mCrimeLab.prefetchCrimesAsync(ids, crimes -> {
+            for (Crime crime : crimes) {
+                File photo = mCrimeLab.getPhotoFile(crime);
+                if (photo.exists()) {
+                    addRequest(mThumbnailCache.prefetch(photo, mThumbnailSize, mThumbnailSize));
+                }
+            }
+        }));
+    }
+
+    public void cancel() {
+        mRequests.cancelAll();
+    }
+
+    /** Logs how often pages found their crime and thumbnail already in memory. */
+    public void report() {
+        int peekHits = mCrimeLab.getPeekHitCount() - mPeekHitsAtStart;
+        int peekMisses = mCrimeLab.getPeekMissCount() - mPeekMissesAtStart;
+        int thumbnailHits = mThumbnailCache.getLoadHitCount() - mThumbnailHitsAtStart;
+        int thumbnailMisses = mThumbnailCache.getLoadMissCount() - mThumbnailMissesAtStart;
+        Log.i(TAG, "depth " + mDepth
+                + ": crimes " + hitRate(peekHits, peekMisses)
+                + ", thumbnails " + hitRate(thumbnailHits, thumbnailMisses));
+    }
+
+    private void addRequest(Future<?> request) {
+        if (request != null) {
+            mRequests.add(request);
+        }
+    }
+
+    private static String hitRate(int hits, int misses) {
+        int total = hits + misses;
+        if (total == 0) {
+            return "no lookups";
+        }
+        return hits + "/" + total + " warm (" + (100 * hits / total) + "%)";
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.criminalintent;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Write-behind for a crime being edited: each change restarts a short timer
+ * and only when edits pause are the dirty columns written with
+ * {@link CrimeLab#saveCrimeAsync}. A burst of keystrokes costs one UPDATE, and
+ * a crime with no changes costs none. Only used from the main thread.
+ */
+public class CrimeSaver {
+    private final CrimeLab mCrimeLab;
+    private final long mDelayMillis;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFlush = this::flush;
+    private Crime mCrime;
+
+    public CrimeSaver(CrimeLab crimeLab, long delayMillis) {
+        mCrimeLab = crimeLab;
+        mDelayMillis = delayMillis;
+    }
+
+    /** Schedules a save of crime once no further change arrives for the delay. */
+    public void onChanged(Crime crime) {
+        if (mCrime != null && mCrime != crime) {
+            flush();
+        }
+        mCrime = crime;
+        mHandler.removeCallbacks(mFlush);
+        mHandler.postDelayed(mFlush, mDelayMillis);
+    }
+
+    /** Writes any pending changes now; nothing is queued if the crime is clean. */
+    public void flush() {
+        mHandler.removeCallbacks(mFlush);
+        if (mCrime != null) {
+            mCrimeLab.saveCrimeAsync(mCrime, null);
+        }
+    }
+}
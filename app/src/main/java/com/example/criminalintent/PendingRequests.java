@@ -0,0 +1,32 @@
+package com.example.criminalintent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Tracks the CrimeLab requests started by a screen so their callbacks can be
+ * dropped when the screen goes away. Only used from the main thread.
+ */
+public class PendingRequests {
+    private final List<Future<?>> mRequests = new ArrayList<>();
+
+    public <T> Future<T> add(Future<T> request) {
+        Iterator<Future<?>> iterator = mRequests.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+            }
+        }
+        mRequests.add(request);
+        return request;
+    }
+
+    public void cancelAll() {
+        for (Future<?> request : mRequests) {
+            request.cancel(false);
+        }
+        mRequests.clear();
+    }
+}
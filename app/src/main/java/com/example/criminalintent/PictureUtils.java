@@ -1,46 +1,228 @@
 package com.example.criminalintent;
 
-import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
-import android.graphics.Point;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+import android.util.Log;
 
 import java.io.File;
+import java.io.IOException;
 
 public class PictureUtils {
+    private static final String TAG = "PictureUtils";
+
     public static Bitmap getScaledBitmap(String path, int destWidth, int destHeight) {
+        return decodeSampledBitmap(path, destWidth, destHeight, Bitmap.Config.ARGB_8888, null);
+    }
+
+    /**
+     * Decodes path at the smallest power-of-two reduction that fits it inside
+     * destWidth x destHeight. The decoder only honours powers of two, so the
+     * result may be up to half the requested size in its tighter dimension.
+     */
+    public static Bitmap decodeSampledBitmap(String path, int destWidth, int destHeight,
+            Bitmap.Config config, BitmapPool pool) {
+        long start = CrimeMetrics.start();
+        try {
+            return decode(path, destWidth, destHeight, config, pool, false);
+        } finally {
+            CrimeLab.getMetrics().end(CrimeMetrics.Op.PHOTO_DECODE, start, path);
+        }
+    }
+
+    private static Bitmap decode(String path, int destWidth, int destHeight,
+            Bitmap.Config config, BitmapPool pool, boolean cover) {
         // Read in the dimensions of the image on disk
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;
         BitmapFactory.decodeFile(path, options);
-
-        float srcWidth = options.outWidth;
-        float srcHeight = options.outHeight;
-
-        // Figure out how much to scale down by
-        int inSampleSize = 1;
-        if (srcHeight > destHeight || srcWidth > destWidth) {
-            float heightScale = srcHeight / destHeight;
-            float widthScale = srcWidth / destWidth;
-
-            inSampleSize = Math.round(Math.max(heightScale, widthScale));
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
         }
 
+        int inSampleSize = cover
+                ? calculateCoverSampleSize(options.outWidth, options.outHeight, destWidth, destHeight)
+                : calculateFitSampleSize(options.outWidth, options.outHeight, destWidth, destHeight);
+        int sampledWidth = ceilDiv(options.outWidth, inSampleSize);
+        int sampledHeight = ceilDiv(options.outHeight, inSampleSize);
+
         options = new BitmapFactory.Options();
         options.inSampleSize = inSampleSize;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        if (pool != null) {
+            options.inBitmap = pool.get(sampledWidth, sampledHeight, config);
+        }
 
         // Read in and create final bitmap
-        return BitmapFactory.decodeFile(path, options);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The decoder rejected the pooled bitmap; fall back to a fresh allocation
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            Log.w(TAG, "Could not reuse bitmap for " + path, e);
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * Decodes path to the smallest size that still covers destWidth x destHeight
+     * (what a centerCrop ImageView shows), keeping the aspect ratio and applying
+     * the EXIF orientation: a power-of-two decode into a pooled buffer, then one
+     * filtered draw that scales and rotates down to the final size. The buffer
+     * goes back to the pool, so the only bitmap left allocated is the
+     * target-sized result. Does file I/O; call it off the main thread.
+     */
+    public static Bitmap getExactScaledBitmap(String path, int destWidth, int destHeight,
+            Bitmap.Config config, BitmapPool pool) {
+        long start = CrimeMetrics.start();
+        try {
+            return decodeExact(path, destWidth, destHeight, config, pool);
+        } finally {
+            CrimeLab.getMetrics().end(CrimeMetrics.Op.PHOTO_DECODE, start, path);
+        }
     }
 
-    public static Bitmap getScaledBitmap(String path, Activity activity) {
-        Point size = new Point();
-        activity.getWindowManager().getDefaultDisplay().getSize(size);
+    private static Bitmap decodeExact(String path, int destWidth, int destHeight,
+            Bitmap.Config config, BitmapPool pool) {
+        int orientation = getExifOrientation(path);
+        boolean transposed = isTransposed(orientation);
+        // The decoder works on the stored pixels, which are sideways for 90/270 degree photos
+        int decodeWidth = transposed ? destHeight : destWidth;
+        int decodeHeight = transposed ? destWidth : destHeight;
+
+        Bitmap sampled = decode(path, decodeWidth, decodeHeight, config, pool, true);
+        if (sampled == null) {
+            return null;
+        }
+
+        float scale = Math.min(1f, Math.max((float) decodeWidth / sampled.getWidth(),
+                (float) decodeHeight / sampled.getHeight()));
+        if (scale == 1f && orientation == ExifInterface.ORIENTATION_NORMAL) {
+            return sampled;
+        }
+
+        int scaledWidth = Math.max(1, Math.round(sampled.getWidth() * scale));
+        int scaledHeight = Math.max(1, Math.round(sampled.getHeight() * scale));
+        int width = transposed ? scaledHeight : scaledWidth;
+        int height = transposed ? scaledWidth : scaledHeight;
+        Bitmap result = pool != null ? pool.get(width, height, config) : null;
+        if (result != null) {
+            result.reconfigure(width, height, config);
+            result.eraseColor(Color.TRANSPARENT);
+        } else {
+            result = Bitmap.createBitmap(width, height, config);
+        }
+
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) scaledWidth / sampled.getWidth(),
+                (float) scaledHeight / sampled.getHeight());
+        applyOrientation(matrix, orientation, width, height);
+        new Canvas(result).drawBitmap(sampled, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+
+        if (pool != null) {
+            pool.put(sampled);
+        } else {
+            sampled.recycle();
+        }
+        return result;
+    }
+
+    /** Returns the ExifInterface orientation of a JPEG, or ORIENTATION_NORMAL if unknown. */
+    public static int getExifOrientation(String path) {
+        try {
+            int orientation = new ExifInterface(path).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            return orientation == ExifInterface.ORIENTATION_UNDEFINED
+                    ? ExifInterface.ORIENTATION_NORMAL : orientation;
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static boolean isTransposed(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270
+                || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+    }
+
+    // Appends the EXIF transform to matrix and moves the result back into a
+    // width x height output, which is already in displayed (rotated) orientation
+    private static void applyOrientation(Matrix matrix, int orientation, int width, int height) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                matrix.postTranslate(width, 0);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                matrix.postTranslate(width, height);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                matrix.postTranslate(0, height);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                matrix.postTranslate(width, 0);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                matrix.postTranslate(width, height);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                matrix.postTranslate(0, height);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Largest power of two that keeps the decoded image at least dest-sized on both axes
+    static int calculateCoverSampleSize(int srcWidth, int srcHeight, int destWidth, int destHeight) {
+        int inSampleSize = 1;
+        while (srcWidth / (inSampleSize * 2) >= destWidth
+                && srcHeight / (inSampleSize * 2) >= destHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    // Smallest power of two that brings the decoded image within dest on both axes
+    static int calculateFitSampleSize(int srcWidth, int srcHeight, int destWidth, int destHeight) {
+        int inSampleSize = 1;
+        while (ceilDiv(srcWidth, inSampleSize) > Math.max(1, destWidth)
+                || ceilDiv(srcHeight, inSampleSize) > Math.max(1, destHeight)) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
 
-        return getScaledBitmap(path, size.x, size.y);
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
     }
 
+    /**
+     * @deprecated Holds the source and a full-size rotated copy at once. Decode
+     * with {@link #getExactScaledBitmap}, which rotates from the EXIF orientation
+     * while scaling.
+     */
+    @Deprecated
     public static Bitmap rotateImage(Bitmap bitmap, int degrees) {
         Matrix matrix = new Matrix();
         matrix.postRotate(degrees);
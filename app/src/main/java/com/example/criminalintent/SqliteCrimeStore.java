@@ -0,0 +1,421 @@
+package com.example.criminalintent;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link CrimeStore} over the app's SQLiteDatabase, see CrimeBaseHelper. Safe to
+ * share between threads: SQLiteDatabase gives each thread a pooled connection,
+ * so in WAL mode reads run beside the single writer. Transactions are
+ * non-exclusive so they only hold the writer's lock. Single-row statements
+ * bind the uuid as a blob, so each has one SQL text for the statement cache.
+ */
+public class SqliteCrimeStore implements CrimeStore {
+    private final SQLiteDatabase mDatabase;
+
+    public SqliteCrimeStore(SQLiteDatabase database) {
+        mDatabase = database;
+    }
+
+    @Override
+    public long count() {
+        return DatabaseUtils.queryNumEntries(mDatabase, CrimeTable.NAME);
+    }
+
+    @Override
+    public List<Crime> getCrimes() {
+        return readCrimes(queryCrimes(CrimeTable.CRIME_COLUMNS, null, null, CrimeSql.LIST_ORDER, null));
+    }
+
+    @Override
+    public List<Crime> getCrimes(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return readCrimes(queryCrimes(CrimeTable.CRIME_COLUMNS, CrimeSql.uuidIn(ids), null, null, null));
+    }
+
+    @Override
+    public Crime getCrime(UUID id) {
+        CrimeDataWrapper dataWrapper = new CrimeDataWrapper(mDatabase.rawQueryWithFactory(
+                bindUuid(id), CrimeSql.select(CrimeTable.CRIME_COLUMNS, CrimeSql.BY_UUID, null, 0),
+                null, CrimeTable.NAME));
+        try {
+            return dataWrapper.moveToFirst() ? dataWrapper.getCrime() : null;
+        } finally {
+            dataWrapper.close();
+        }
+    }
+
+    @Override
+    public CrimeIdIndex getCrimeIdIndex() {
+        Cursor cursor = mDatabase.query(CrimeTable.NAME, CrimeTable.ID_COLUMNS,
+                null, null, null, null, CrimeSql.LIST_ORDER);
+        try {
+            CrimeIdIndex index = new CrimeIdIndex(cursor.getCount());
+            while (cursor.moveToNext()) {
+                // ID_COLUMNS fixes the ordinals
+                byte[] uuid = cursor.getBlob(1);
+                index.add(cursor.getLong(0), UuidBytes.mostSigBits(uuid), UuidBytes.leastSigBits(uuid));
+            }
+            return index;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public int forEachCrime(long afterRowId, int limit, RowVisitor visitor) {
+        CrimeDataWrapper dataWrapper = queryCrimes(CrimeTable.CRIME_COLUMNS, CrimeSql.AFTER_ROW_ID,
+                new String[] { Long.toString(afterRowId) }, CrimeSql.ROW_ID_ORDER,
+                Integer.toString(limit));
+        int visited = 0;
+        try {
+            while (dataWrapper.moveToNext()) {
+                dataWrapper.visitRow(visitor);
+                visited++;
+            }
+        } finally {
+            dataWrapper.close();
+        }
+        return visited;
+    }
+
+    @Override
+    public CrimePage getCrimePage(CrimeQuery query, CrimePage.Key after, int pageSize) {
+        List<CrimeSummary> crimes = new ArrayList<>(pageSize);
+        String orderBy = CrimeSql.orderBy(query);
+        for (CrimeSql.Where where : CrimeSql.listWhere(query, after)) {
+            if (crimes.size() == pageSize) {
+                break;
+            }
+            crimes.addAll(readSummaries(queryCrimes(CrimeTable.SUMMARY_COLUMNS, where.getSql(),
+                    where.getStringArgs(), orderBy, Integer.toString(pageSize - crimes.size()))));
+        }
+        CrimePage.Key nextKey = crimes.size() < pageSize ? null
+                : CrimePage.Key.of(crimes.get(crimes.size() - 1));
+        return new CrimePage(crimes, nextKey);
+    }
+
+    @Override
+    public List<CrimePage> getCrimePages(CrimeQuery query, int pageCount, int pageSize,
+            Set<Integer> materialize) {
+        List<CrimePage> pages = new ArrayList<>(pageCount);
+        CrimeSql.Where where = CrimeSql.listWhere(query, null).get(0);
+        CrimeDataWrapper dataWrapper = queryCrimes(CrimeTable.SUMMARY_COLUMNS, where.getSql(),
+                where.getStringArgs(), CrimeSql.orderBy(query), Integer.toString(pageCount * pageSize));
+        try {
+            List<CrimeSummary> crimes = null;
+            int row = 0;
+            while (dataWrapper.moveToNext()) {
+                int pageIndex = row / pageSize;
+                if (row % pageSize == 0) {
+                    crimes = materialize.contains(pageIndex) ? new ArrayList<>(pageSize) : null;
+                }
+                if (crimes != null) {
+                    crimes.add(dataWrapper.getCrimeSummary());
+                }
+                row++;
+                if (row % pageSize == 0) {
+                    CrimePage.Key nextKey = dataWrapper.getPageKey();
+                    pages.add(crimes != null ? new CrimePage(crimes, nextKey)
+                            : CrimePage.boundary(pageSize, nextKey));
+                }
+            }
+
+            if (row < pageCount * pageSize) {
+                // The walk ran out of rows, so the last page is short (or empty) and ends the list
+                int size = row % pageSize;
+                if (size == 0) {
+                    pages.add(new CrimePage(new ArrayList<>(), null));
+                } else if (crimes != null) {
+                    pages.add(new CrimePage(crimes, null));
+                } else {
+                    pages.add(CrimePage.boundary(size, null));
+                }
+            }
+        } finally {
+            dataWrapper.close();
+        }
+        return pages;
+    }
+
+    @Override
+    public List<CrimeSummary> getCrimeSummaries(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return readSummaries(queryCrimes(CrimeTable.SUMMARY_COLUMNS, CrimeSql.uuidIn(ids),
+                null, null, null));
+    }
+
+    @Override
+    public List<CrimeSummary> searchCrimes(String query, int limit) {
+        String[] matches = CrimeSql.searchArgs(query);
+        if (matches == null) {
+            return new ArrayList<>();
+        }
+        return readSummaries(new CrimeDataWrapper(mDatabase.rawQuery(CrimeSql.SEARCH + limit, matches)));
+    }
+
+    @Override
+    public CrimeStats getStats() {
+        return queryStats(CrimeSql.STATS);
+    }
+
+    @Override
+    public CrimeStats countStats() {
+        return queryStats(CrimeSql.COUNTS);
+    }
+
+    @Override
+    public void rebuildStats() {
+        mDatabase.beginTransactionNonExclusive();
+        try {
+            for (String sql : CrimeSql.rebuildCounters()) {
+                mDatabase.execSQL(sql);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    public boolean insertCrime(Crime crime) {
+        ContentValues values = getContentValues(crime, Crime.ALL_FIELDS);
+        values.put(CrimeTable.Cols.UUID, UuidBytes.toBytes(crime.getId()));
+        return mDatabase.insert(CrimeTable.NAME, null, values) != -1;
+    }
+
+    @Override
+    public boolean updateCrime(Crime crime, int fields) {
+        if ((fields & Crime.ALL_FIELDS) == 0) {
+            return false;
+        }
+        SQLiteStatement update = mDatabase.compileStatement(CrimeSql.updateSql(fields));
+        try {
+            bindUpdate(update, crime, fields);
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            update.close();
+        }
+    }
+
+    @Override
+    public boolean setCrimeSolved(UUID id, boolean solved) {
+        SQLiteStatement update = mDatabase.compileStatement(CrimeSql.updateSql(Crime.DIRTY_SOLVED));
+        try {
+            update.bindLong(1, solved ? 1 : 0);
+            update.bindBlob(2, UuidBytes.toBytes(id));
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            update.close();
+        }
+    }
+
+    @Override
+    public boolean deleteCrime(UUID id) {
+        SQLiteStatement delete = mDatabase.compileStatement(CrimeSql.DELETE);
+        try {
+            delete.bindBlob(1, UuidBytes.toBytes(id));
+            return delete.executeUpdateDelete() > 0;
+        } finally {
+            delete.close();
+        }
+    }
+
+    @Override
+    public List<UUID> insertCrimes(Collection<Crime> crimes) {
+        List<UUID> inserted = new ArrayList<>(crimes.size());
+        SQLiteStatement insert = mDatabase.compileStatement(CrimeSql.INSERT);
+        mDatabase.beginTransactionNonExclusive();
+        try {
+            for (Crime crime : crimes) {
+                insert.clearBindings();
+                insert.bindBlob(1, UuidBytes.toBytes(crime.getId()));
+                bindStringOrNull(insert, 2, crime.getTitle());
+                insert.bindLong(3, crime.getDate().getTime());
+                insert.bindLong(4, crime.isSolved() ? 1 : 0);
+                bindStringOrNull(insert, 5, crime.getSuspect());
+                if (insert.executeInsert() != -1) {
+                    inserted.add(crime.getId());
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+            insert.close();
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<UUID> updateCrimes(Collection<Crime> crimes) {
+        List<UUID> updated = new ArrayList<>(crimes.size());
+        SQLiteStatement update = mDatabase.compileStatement(CrimeSql.UPDATE);
+        mDatabase.beginTransactionNonExclusive();
+        try {
+            for (Crime crime : crimes) {
+                update.clearBindings();
+                bindStringOrNull(update, 1, crime.getTitle());
+                update.bindLong(2, crime.getDate().getTime());
+                update.bindLong(3, crime.isSolved() ? 1 : 0);
+                bindStringOrNull(update, 4, crime.getSuspect());
+                update.bindBlob(5, UuidBytes.toBytes(crime.getId()));
+                if (update.executeUpdateDelete() > 0) {
+                    updated.add(crime.getId());
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+            update.close();
+        }
+        return updated;
+    }
+
+    @Override
+    public List<UUID> deleteCrimes(Collection<UUID> ids) {
+        List<UUID> deleted = new ArrayList<>(ids.size());
+        SQLiteStatement delete = mDatabase.compileStatement(CrimeSql.DELETE);
+        mDatabase.beginTransactionNonExclusive();
+        try {
+            for (UUID id : ids) {
+                delete.bindBlob(1, UuidBytes.toBytes(id));
+                if (delete.executeUpdateDelete() > 0) {
+                    deleted.add(id);
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+            delete.close();
+        }
+        return deleted;
+    }
+
+    private CrimeDataWrapper queryCrimes(String[] columns, String whereClause, String[] whereArgs,
+            String orderBy, String limit) {
+        Cursor dataResult = mDatabase.query(
+                CrimeTable.NAME,
+                columns,
+                whereClause,
+                whereArgs,
+                null, // groupBy
+                null, // having
+                orderBy,
+                limit
+        );
+
+        return new CrimeDataWrapper(dataResult);
+    }
+
+    // Rows as CrimeSql.STATS returns them: the totals first, then the types
+    private CrimeStats queryStats(String sql) {
+        CrimeStats stats = new CrimeStats(0, 0);
+        Cursor rows = mDatabase.rawQuery(sql, null);
+        try {
+            while (rows.moveToNext()) {
+                if (rows.isNull(0)) {
+                    stats = new CrimeStats(rows.getInt(1), rows.getInt(2));
+                } else {
+                    stats.addType(rows.getString(0), rows.getInt(1), rows.getInt(2));
+                }
+            }
+        } finally {
+            rows.close();
+        }
+        return stats;
+    }
+
+    // Queries through SQLiteDatabase can only bind strings; this binds the
+    // first placeholder to the uuid's bytes instead
+    private static SQLiteDatabase.CursorFactory bindUuid(UUID id) {
+        byte[] uuid = UuidBytes.toBytes(id);
+        return (database, driver, editTable, query) -> {
+            query.bindBlob(1, uuid);
+            return new SQLiteCursor(driver, editTable, query);
+        };
+    }
+
+    private static List<Crime> readCrimes(CrimeDataWrapper dataWrapper) {
+        List<Crime> crimes = new ArrayList<>(dataWrapper.getCount());
+        try {
+            while (dataWrapper.moveToNext()) {
+                crimes.add(dataWrapper.getCrime());
+            }
+        } finally {
+            dataWrapper.close();
+        }
+        return crimes;
+    }
+
+    private static List<CrimeSummary> readSummaries(CrimeDataWrapper dataWrapper) {
+        List<CrimeSummary> crimes = new ArrayList<>();
+        try {
+            while (dataWrapper.moveToNext()) {
+                crimes.add(dataWrapper.getCrimeSummary());
+            }
+        } finally {
+            dataWrapper.close();
+        }
+        return crimes;
+    }
+
+    // Binds in the column order of CrimeSql.updateSql(fields)
+    private static void bindUpdate(SQLiteStatement update, Crime crime, int fields) {
+        int index = 1;
+        if ((fields & Crime.DIRTY_TITLE) != 0) {
+            bindStringOrNull(update, index++, crime.getTitle());
+        }
+        if ((fields & Crime.DIRTY_DATE) != 0) {
+            update.bindLong(index++, crime.getDate().getTime());
+        }
+        if ((fields & Crime.DIRTY_SOLVED) != 0) {
+            update.bindLong(index++, crime.isSolved() ? 1 : 0);
+        }
+        if ((fields & Crime.DIRTY_SUSPECT) != 0) {
+            bindStringOrNull(update, index++, crime.getSuspect());
+        }
+        update.bindBlob(index, UuidBytes.toBytes(crime.getId()));
+    }
+
+    // The columns in fields (Crime.DIRTY_* bits)
+    private static ContentValues getContentValues(Crime crime, int fields) {
+        ContentValues values = new ContentValues(Integer.bitCount(fields) + 1);
+        if ((fields & Crime.DIRTY_TITLE) != 0) {
+            values.put(CrimeTable.Cols.TITLE, crime.getTitle());
+        }
+        if ((fields & Crime.DIRTY_DATE) != 0) {
+            values.put(CrimeTable.Cols.DATE, crime.getDate().getTime());
+        }
+        if ((fields & Crime.DIRTY_SOLVED) != 0) {
+            values.put(CrimeTable.Cols.SOLVED, crime.isSolved() ? 1 : 0);
+        }
+        if ((fields & Crime.DIRTY_SUSPECT) != 0) {
+            values.put(CrimeTable.Cols.SUSPECT, crime.getSuspect());
+        }
+        return values;
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.criminalintent;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * Marks the phases of a cold start (database open, migration, sample data,
+ * first query) as systrace/Perfetto sections and logs how long each took and
+ * when it ended relative to {@link CrimeApplication#onCreate}, under
+ * "CrimeStartup". A begin and its end must run on the same thread.
+ */
+public final class StartupTrace {
+    public static final String OPEN = "CrimeLab.open";
+    public static final String MIGRATE = "CrimeLab.migrate";
+    public static final String SEED = "CrimeLab.seed";
+    public static final String FIRST_QUERY = "CrimeLab.firstQuery";
+
+    private static final String TAG = "CrimeStartup";
+
+    private static volatile long sAppStartNanos;
+    private static volatile Listener sListener;
+
+    // Test hook, told each section's name as it ends
+    interface Listener {
+        void onEnd(String section);
+    }
+
+    private StartupTrace() {
+    }
+
+    // Pass null to remove the listener
+    static void setListener(Listener listener) {
+        sListener = listener;
+    }
+
+    public static void markAppStart() {
+        sAppStartNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    /** Opens section; pass the returned time to {@link #end}. */
+    public static long begin(String section) {
+        Trace.beginSection(section);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public static void end(String section, long startNanos) {
+        long endNanos = SystemClock.elapsedRealtimeNanos();
+        Trace.endSection();
+        if (sAppStartNanos == 0) {
+            Log.i(TAG, String.format("%s: %.1f ms", section, (endNanos - startNanos) / 1e6));
+        } else {
+            Log.i(TAG, String.format("%s: %.1f ms, done %.1f ms after app start", section,
+                    (endNanos - startNanos) / 1e6, (endNanos - sAppStartNanos) / 1e6));
+        }
+        Listener listener = sListener;
+        if (listener != null) {
+            listener.onEnd(section);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.criminalintent;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Scaled crime photos, cached twice: decoded bitmaps in a memory LRU bounded
+ * in bytes, and pre-scaled JPEGs under cacheDir/thumbnails so a cold page
+ * decodes a small file instead of the full camera image. Decoding happens on
+ * a background pool and the result is delivered on the main thread.
+ */
+public class ThumbnailCache {
+    private static final String TAG = "ThumbnailCache";
+    private static final String DIRECTORY = "thumbnails";
+    private static final int JPEG_QUALITY = 85;
+    // Thumbnails are opaque JPEGs, so half-size pixels lose nothing visible
+    private static final Bitmap.Config THUMBNAIL_CONFIG = Bitmap.Config.RGB_565;
+    private static final long POOL_BYTES = 8 * 1024 * 1024;
+
+    private static ThumbnailCache sThumbnailCache;
+
+    // How load() requests were answered; load is only called on the main thread
+    private int mLoadHits;
+    private int mLoadMisses;
+
+    private final File mDirectory;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    // Reused for the intermediate decode buffers only; cached bitmaps never go back in
+    private final BitmapPool mBitmapPool = new BitmapPool(POOL_BYTES);
+    // Bumped by invalidate() per photo name, so a decode that was already
+    // running neither caches nor writes the old picture; guarded by itself
+    private final Map<String, Integer> mGenerations = new HashMap<>();
+    // The decode running for each memory key and photo generation, so a load
+    // joins a prefetch of the same thumbnail instead of decoding it again;
+    // guarded by itself
+    private final Map<String, FutureTask<Bitmap>> mDecoding = new HashMap<>();
+    private final ExecutorService mDecodeExecutor =
+            Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "ThumbnailCache-decode"));
+
+    public static synchronized ThumbnailCache get(Context context) {
+        if (sThumbnailCache == null) {
+            sThumbnailCache = new ThumbnailCache(context.getApplicationContext());
+        }
+        return sThumbnailCache;
+    }
+
+    private ThumbnailCache(Context context) {
+        mDirectory = new File(context.getCacheDir(), DIRECTORY);
+        // An eighth of the heap, in bytes
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    /** Returns the thumbnail if it is already decoded in memory, without any I/O. */
+    public Bitmap peek(File photo, int width, int height) {
+        return mMemoryCache.get(memoryKey(photo, width, height));
+    }
+
+    /**
+     * Delivers a bitmap of photo scaled to cover width x height, or null if the
+     * photo does not exist. A memory hit is delivered before this returns.
+     */
+    public Future<Bitmap> load(File photo, int width, int height, CrimeLab.Callback<Bitmap> callback) {
+        Bitmap cached = peek(photo, width, height);
+        if (cached != null) {
+            mLoadHits++;
+            CallbackTask<Bitmap> done = new CallbackTask<>(() -> cached, null, true);
+            done.run();
+            callback.onResult(cached);
+            return done;
+        }
+
+        mLoadMisses++;
+        CallbackTask<Bitmap> task = new CallbackTask<>(
+                () -> decodeOnce(photo, width, height), callback, true);
+        mDecodeExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Decodes the thumbnail into memory in the background so a later load is a
+     * hit. Returns null when it is already there; cancel the future to skip it.
+     */
+    public Future<Bitmap> prefetch(File photo, int width, int height) {
+        if (peek(photo, width, height) != null) {
+            return null;
+        }
+        CallbackTask<Bitmap> task = new CallbackTask<>(
+                () -> decodeOnce(photo, width, height), null, true);
+        mDecodeExecutor.execute(task);
+        return task;
+    }
+
+    public int getLoadHitCount() {
+        return mLoadHits;
+    }
+
+    public int getLoadMissCount() {
+        return mLoadMisses;
+    }
+
+    /** Drops every cached size of photo; call it after the file has been replaced. */
+    public void invalidate(File photo) {
+        String prefix = photo.getName() + "@";
+        synchronized (mGenerations) {
+            mGenerations.put(photo.getName(), generation(photo) + 1);
+            for (String key : mMemoryCache.snapshot().keySet()) {
+                if (key.startsWith(prefix)) {
+                    mMemoryCache.remove(key);
+                }
+            }
+        }
+        mDecodeExecutor.execute(() -> {
+            File[] thumbnails = mDirectory.listFiles((dir, name) -> name.startsWith(prefix));
+            if (thumbnails != null) {
+                for (File thumbnail : thumbnails) {
+                    thumbnail.delete();
+                }
+            }
+        });
+    }
+
+    // Only a decode that is already running is joined, so a waiting pool
+    // thread never blocks on work queued behind it
+    private Bitmap decodeOnce(File photo, int width, int height) throws InterruptedException {
+        Bitmap cached = peek(photo, width, height);
+        if (cached != null) {
+            return cached;
+        }
+
+        String key;
+        synchronized (mGenerations) {
+            key = memoryKey(photo, width, height) + "#" + generation(photo);
+        }
+        FutureTask<Bitmap> decoding;
+        boolean owner = false;
+        synchronized (mDecoding) {
+            decoding = mDecoding.get(key);
+            if (decoding == null) {
+                decoding = new FutureTask<>(() -> decode(photo, width, height));
+                mDecoding.put(key, decoding);
+                owner = true;
+            }
+        }
+        if (owner) {
+            try {
+                decoding.run();
+            } finally {
+                synchronized (mDecoding) {
+                    mDecoding.remove(key);
+                }
+            }
+        }
+        try {
+            return decoding.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    private Bitmap decode(File photo, int width, int height) {
+        if (!photo.exists()) {
+            return null;
+        }
+
+        int generation;
+        synchronized (mGenerations) {
+            generation = generation(photo);
+        }
+        String key = memoryKey(photo, width, height);
+        File thumbnail = new File(mDirectory, key + ".jpg");
+        Bitmap bitmap = null;
+        // A thumbnail older than its photo was made from a picture that has since been replaced
+        if (thumbnail.exists() && thumbnail.lastModified() >= photo.lastModified()) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = THUMBNAIL_CONFIG;
+            bitmap = BitmapFactory.decodeFile(thumbnail.getPath(), options);
+        }
+        if (bitmap == null) {
+            bitmap = PictureUtils.getExactScaledBitmap(photo.getPath(), width, height,
+                    THUMBNAIL_CONFIG, mBitmapPool);
+            if (bitmap == null) {
+                return null;
+            }
+            writeThumbnail(bitmap, thumbnail, photo, generation);
+        }
+
+        synchronized (mGenerations) {
+            if (generation(photo) == generation) {
+                mMemoryCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    // Call with mGenerations held
+    private int generation(File photo) {
+        Integer generation = mGenerations.get(photo.getName());
+        return generation != null ? generation : 0;
+    }
+
+    private void writeThumbnail(Bitmap bitmap, File thumbnail, File photo, int generation) {
+        // Written to a temporary file first so a reader never sees half a
+        // file; the name is unique so concurrent writers never share one
+        File temp = null;
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                return;
+            }
+            temp = File.createTempFile(thumbnail.getName(), ".tmp", mDirectory);
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            }
+            // Renamed under the lock: either invalidate()'s delete, queued
+            // after the bump, finds the file, or the photo changed and it is dropped
+            synchronized (mGenerations) {
+                if (generation(photo) != generation || !temp.renameTo(thumbnail)) {
+                    temp.delete();
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write thumbnail " + thumbnail, e);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static String memoryKey(File photo, int width, int height) {
+        return photo.getName() + "@" + width + "x" + height;
+    }
+}
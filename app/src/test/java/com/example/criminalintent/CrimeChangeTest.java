@@ -0,0 +1,49 @@
+package com.example.criminalintent;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CrimeChangeTest {
+    @Test
+    public void updateAfterInsertStaysAnInsert() {
+        UUID id = UUID.randomUUID();
+        CrimeChange change = new CrimeChange.Builder().inserted(id).updated(id).build();
+
+        assertTrue(change.getInserted().contains(id));
+        assertTrue(change.getUpdated().isEmpty());
+    }
+
+    @Test
+    public void insertThenDeleteCancelsOut() {
+        UUID id = UUID.randomUUID();
+        CrimeChange change = new CrimeChange.Builder().inserted(id).updated(id).deleted(id).build();
+
+        assertTrue(change.isEmpty());
+    }
+
+    @Test
+    public void deleteThenInsertReadsAsUpdate() {
+        UUID id = UUID.randomUUID();
+        CrimeChange change = new CrimeChange.Builder().deleted(id).inserted(id).build();
+
+        assertEquals(1, change.getUpdated().size());
+        assertFalse(change.hasStructuralChanges());
+    }
+
+    @Test
+    public void mergingKeepsTheOrderOfWrites() {
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        CrimeChange first = new CrimeChange.Builder().updated(kept).updated(removed).build();
+        CrimeChange second = CrimeChange.deleted(removed);
+
+        CrimeChange merged = new CrimeChange.Builder().add(first).add(second).build();
+
+        assertEquals(1, merged.getUpdated().size());
+        assertTrue(merged.getUpdated().contains(kept));
+        assertTrue(merged.getDeleted().contains(removed));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.criminalintent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class CrimeDateFormatterTest {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int DAYS = 100;
+    private static final int BINDS = 100_000;
+
+    private Locale mDefaultLocale;
+
+    @Before
+    public void setUp() {
+        mDefaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mDefaultLocale);
+    }
+
+    @Test
+    public void matchesSimpleDateFormat() {
+        TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+        CrimeDateFormatter formatter = new CrimeDateFormatter(timeZone);
+        SimpleDateFormat expected = new SimpleDateFormat("dd MMM, yyyy", Locale.US);
+        expected.setTimeZone(timeZone);
+
+        // Every hour over two years, across both DST switches and day boundaries
+        long start = 1_700_000_000_000L;
+        for (long millis = start; millis < start + 730 * DAY_MILLIS; millis += 60 * 60 * 1000) {
+            assertEquals(expected.format(new Date(millis)), formatter.format(millis));
+        }
+    }
+
+    @Test
+    public void localeChangeClearsCache() {
+        CrimeDateFormatter formatter = new CrimeDateFormatter(TimeZone.getTimeZone("UTC"));
+        long millis = 1_700_000_000_000L;
+        assertEquals("14 Nov, 2023", formatter.format(millis));
+
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals(new SimpleDateFormat("dd MMM, yyyy", Locale.GERMANY).format(new Date(millis)),
+                formatter.format(millis));
+    }
+
+    @Test
+    public void defaultZoneChangeClearsCache() throws InterruptedException {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            CrimeDateFormatter formatter = new CrimeDateFormatter();
+            // 23:20 UTC on the 14th is already the 15th in Tokyo
+            long millis = 1_700_004_000_000L;
+            assertEquals("14 Nov, 2023", formatter.format(millis));
+
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            // The default zone is only looked at once a second
+            Thread.sleep(1100);
+            assertEquals("15 Nov, 2023", formatter.format(millis));
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    @Test
+    public void cachedDaysAllocateNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threads);
+        long threadId = Thread.currentThread().getId();
+
+        CrimeDateFormatter formatter = new CrimeDateFormatter(TimeZone.getTimeZone("UTC"));
+        long[] dates = new long[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            dates[i] = 1_700_000_000_000L + i * DAY_MILLIS + (i * 7919L) % DAY_MILLIS;
+        }
+        // Warm-up: fills the cache and lets the JIT settle
+        int checksum = 0;
+        for (int i = 0; i < BINDS; i++) {
+            checksum += formatter.format(dates[i % DAYS]).length();
+        }
+
+        // What reading the counter costs by itself
+        long first = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - first;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < BINDS; i++) {
+            checksum += formatter.format(dates[i % DAYS]).length();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertTrue(checksum > 0);
+        // The JVM itself may charge a few hundred bytes to the thread (OSR, deoptimization);
+        // one object per format would be at least 16 bytes each, i.e. over 1.6 MB here
+        assertEquals("bytes allocated per format, " + allocated + " in total", 0, allocated / BINDS);
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean threads) {
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+}
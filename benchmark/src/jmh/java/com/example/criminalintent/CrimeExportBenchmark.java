@@ -0,0 +1,119 @@
+package com.example.criminalintent;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full CSV and JSON exports of 1M crimes from an on-disk SQLite database to a
+ * file. Besides the time per export, the "rows" and "bytes" counters report
+ * rows/s and bytes/s (divide by 1e6 for MB/s).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CrimeExportBenchmark {
+    private static final String[] CRIME_TYPES = {
+            "Armed Robbery", "Burglary", "Assault", "Fraud", "Drug Trafficking",
+            "Vandalism", "Theft", "Embezzlement", "Forgery", "Money Laundering"
+    };
+    private static final String[] LOCATIONS = {
+            "Downtown", "Suburbs", "Shopping Mall", "Bank", "Gas Station",
+            "Park", "Airport", "Hotel", "Warehouse", "Beach"
+    };
+    private static final String[] SUSPECTS = {
+            "John Doe", "Jane Smith", "Mike Johnson", "Sarah Wilson", "David Brown",
+            "Lisa Davis", "Tom Miller", "Amy Garcia", "O'Brien, \"Red\""
+    };
+
+    @Param({ "1000000" })
+    public int rows;
+
+    @Param({ "CSV", "JSON" })
+    public CrimeExporter.Format format;
+
+    private File mDatabaseFile;
+    private File mExportFile;
+    private Connection mConnection;
+    private JdbcCrimeStore mStore;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long rows;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mDatabaseFile = File.createTempFile("crimes", ".db");
+        mExportFile = File.createTempFile("crimes", format.getExtension());
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mDatabaseFile.getAbsolutePath());
+        JdbcCrimeStore.createSchema(mConnection);
+        mStore = new JdbcCrimeStore(mConnection);
+
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        int chunk = 10_000;
+        for (int start = 0; start < rows; start += chunk) {
+            int count = Math.min(chunk, rows - start);
+            List<Crime> crimes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Crime crime = new Crime();
+                crime.setTitle(CRIME_TYPES[random.nextInt(CRIME_TYPES.length)] + " - " +
+                        LOCATIONS[random.nextInt(LOCATIONS.length)]);
+                crime.setDate(new Date(now - (long) (random.nextDouble() * 365 * 24 * 60 * 60 * 1000)));
+                crime.setSolved(random.nextInt(10) < 4);
+                crime.setSuspect(SUSPECTS[random.nextInt(SUSPECTS.length)]);
+                crimes.add(crime);
+            }
+            mStore.insertCrimes(crimes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+        mDatabaseFile.delete();
+        mExportFile.delete();
+    }
+
+    @Benchmark
+    public long export(Counters counters) throws IOException {
+        CrimeExporter exporter = new CrimeExporter(format);
+        try (FileChannel channel = FileChannel.open(mExportFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            counters.rows += exporter.export(mStore, channel);
+        }
+        counters.bytes += exporter.getBytesWritten();
+        return exporter.getBytesWritten();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.criminalintent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of CrimeMetrics timing: on its own, and as the difference between
+ * a bare JdbcCrimeStore and the same store behind TimedCrimeStore for the
+ * cheapest call (getCrime by UUID) and a list page. timingOnly should stay
+ * under 1% of getCrimeBare.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CrimeMetricsBenchmark {
+    private static final int LOOKUP_IDS = 4096;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({ "100000" })
+    public int rows;
+
+    private File mFile;
+    private Connection mConnection;
+    private JdbcCrimeStore mStore;
+    private CrimeMetrics mMetrics;
+    private TimedCrimeStore mTimedStore;
+    private UUID[] mLookupIds;
+    private int mNextLookup;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("crimes", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        JdbcCrimeStore.createSchema(mConnection);
+        mStore = new JdbcCrimeStore(mConnection);
+        // Never slow, so the slow log stays out of the numbers
+        mMetrics = new CrimeMetrics(TimeUnit.DAYS.toMillis(1));
+        mTimedStore = new TimedCrimeStore(mStore, mMetrics);
+
+        // Every stride-th id, so lookups are spread over the whole table
+        mLookupIds = new UUID[LOOKUP_IDS];
+        int stride = rows / LOOKUP_IDS;
+        List<Crime> crimes = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Crime crime = new Crime();
+            crime.setTitle("Metrics crime " + i);
+            crime.setDate(new Date(i * 60_000L));
+            crime.setSuspect("Suspect " + (i % 50));
+            crimes.add(crime);
+            if (i % stride == 0 && i / stride < LOOKUP_IDS) {
+                mLookupIds[i / stride] = crime.getId();
+            }
+        }
+        mStore.insertCrimes(crimes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public void timingOnly() {
+        mMetrics.end(CrimeMetrics.Op.GET, CrimeMetrics.start(), "getCrime");
+    }
+
+    @Benchmark
+    public Crime getCrimeBare() {
+        return mStore.getCrime(nextId());
+    }
+
+    @Benchmark
+    public Crime getCrimeTimed() {
+        return mTimedStore.getCrime(nextId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CrimePage getCrimePageBare() {
+        return mStore.getCrimePage(CrimeQuery.DEFAULT, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CrimePage getCrimePageTimed() {
+        return mTimedStore.getCrimePage(CrimeQuery.DEFAULT, null, PAGE_SIZE);
+    }
+
+    private UUID nextId() {
+        return mLookupIds[mNextLookup++ & (LOOKUP_IDS - 1)];
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.criminalintent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CrimeStore throughput against an on-disk SQLite database of 1k, 100k and 1M
+ * crimes, through the same schema and SQL the app uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CrimeStoreBenchmark {
+    private static final int INSERT_BATCH = 1000;
+    private static final int LOOKUP_IDS = 4096;
+    private static final int SEARCH_LIMIT = 200;
+
+    private static final String[] CRIME_TYPES = {
+            "Armed Robbery", "Burglary", "Assault", "Fraud", "Drug Trafficking",
+            "Vandalism", "Theft", "Embezzlement", "Forgery", "Money Laundering"
+    };
+    private static final String[] LOCATIONS = {
+            "Downtown", "Suburbs", "Shopping Mall", "Bank", "Gas Station",
+            "Park", "Airport", "Hotel", "Warehouse", "Beach"
+    };
+    private static final String[] SUSPECTS = {
+            "John Doe", "Jane Smith", "Mike Johnson", "Sarah Wilson", "David Brown",
+            "Lisa Davis", "Tom Miller", "Amy Garcia"
+    };
+
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    private File mFile;
+    private Connection mConnection;
+    private JdbcCrimeStore mStore;
+    private final Random mRandom = new Random(42);
+    private UUID[] mLookupIds;
+    private int mNextLookup;
+
+    /**
+     * One batch for insertBatch, built before each call and deleted after it
+     * so every insert sees the table at its parameter size. A state of its own
+     * so the per-call fixtures do not run around the other benchmarks.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        List<Crime> mCrimes;
+
+        @Setup(Level.Invocation)
+        public void newBatch(CrimeStoreBenchmark benchmark) {
+            mCrimes = benchmark.newCrimes(INSERT_BATCH);
+        }
+
+        @TearDown(Level.Invocation)
+        public void removeBatch(CrimeStoreBenchmark benchmark) {
+            List<UUID> ids = new ArrayList<>(mCrimes.size());
+            for (Crime crime : mCrimes) {
+                ids.add(crime.getId());
+            }
+            benchmark.mStore.deleteCrimes(ids);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("crimes", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        JdbcCrimeStore.createSchema(mConnection);
+        mStore = new JdbcCrimeStore(mConnection);
+
+        // Reservoir sample of the ids, so lookups are spread over the whole table
+        mLookupIds = new UUID[LOOKUP_IDS];
+        int chunk = 10_000;
+        int seen = 0;
+        for (int start = 0; start < rows; start += chunk) {
+            List<Crime> crimes = newCrimes(Math.min(chunk, rows - start));
+            mStore.insertCrimes(crimes);
+            for (Crime crime : crimes) {
+                int slot = seen < LOOKUP_IDS ? seen : mRandom.nextInt(seen + 1);
+                if (slot < LOOKUP_IDS) {
+                    mLookupIds[slot] = crime.getId();
+                }
+                seen++;
+            }
+        }
+        for (int i = rows; i < LOOKUP_IDS; i++) {
+            mLookupIds[i] = mLookupIds[i % rows];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+        mFile.delete();
+    }
+
+    // A 1000-row transaction takes milliseconds, far above the cost of the per-call fixtures
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH)
+    public List<UUID> insertBatch(Batch batch) {
+        return mStore.insertCrimes(batch.mCrimes);
+    }
+
+    @Benchmark
+    public Crime getCrimeByUuid() {
+        UUID id = mLookupIds[mNextLookup++ & (LOOKUP_IDS - 1)];
+        return mStore.getCrime(id);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Crime> getCrimes() {
+        return mStore.getCrimes();
+    }
+
+    @Benchmark
+    public List<CrimeSummary> searchCrimes() {
+        return mStore.searchCrimes("bur dav", SEARCH_LIMIT);
+    }
+
+    private List<Crime> newCrimes(int count) {
+        long now = System.currentTimeMillis();
+        List<Crime> crimes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Crime crime = new Crime();
+            crime.setTitle(CRIME_TYPES[mRandom.nextInt(CRIME_TYPES.length)] + " - " +
+                    LOCATIONS[mRandom.nextInt(LOCATIONS.length)]);
+            crime.setDate(new Date(now - (long) (mRandom.nextDouble() * 365 * 24 * 60 * 60 * 1000)));
+            crime.setSolved(mRandom.nextInt(10) < 4);
+            crime.setSuspect(SUSPECTS[mRandom.nextInt(SUSPECTS.length)]);
+            crimes.add(crime);
+        }
+        return crimes;
+    }
+}
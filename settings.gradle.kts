@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "CriminalIntent"
 include(":app")
+include(":store")
+include(":benchmark")
  
\ No newline at end of file
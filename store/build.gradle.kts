@@ -0,0 +1,23 @@
+plugins {
+    `java-library`
+}
+
+// Crime model, schema and SQL with no Android dependency, so they can be
+// tested and benchmarked on a plain JVM
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Links against the Java 11 API instead of the JDK running the build, so no
+// newer overload (MappedByteBuffer.duplicate() is Java 17) slips into the app.
+// ByteBuffer's own covariant flip() and clear() are still Java 9: call those
+// through Buffer.
+tasks.withType<JavaCompile>().configureEach {
+    options.release.set(11)
+}
+
+dependencies {
+    testImplementation(libs.junit)
+    testRuntimeOnly(libs.sqlite.jdbc)
+}
@@ -0,0 +1,154 @@
+package com.example.criminalintent;
+
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+
+public class Crime {
+    // Bits of getDirtyFields(), one per column that can be edited
+    public static final int DIRTY_TITLE = 1;
+    public static final int DIRTY_DATE = 1 << 1;
+    public static final int DIRTY_SOLVED = 1 << 2;
+    public static final int DIRTY_SUSPECT = 1 << 3;
+    public static final int ALL_FIELDS = DIRTY_TITLE | DIRTY_DATE | DIRTY_SOLVED | DIRTY_SUSPECT;
+
+    private long mRowId;
+    private UUID mId;
+    private String mTitle;
+    private Date mDate;
+    private boolean mSolved;
+    private String mSuspect;
+    private String mPhotoFilename;
+    // Fields set to a new value since the crime was last read or written
+    private int mDirtyFields;
+
+    public Crime() {
+        this(UUID.randomUUID());
+    }
+
+    public Crime(UUID id) {
+        mId = id;
+        mDate = new Date();
+    }
+
+    // A detached snapshot, so a write on another thread cannot see later edits
+    public Crime copy() {
+        Crime copy = new Crime(mId);
+        copy.mRowId = mRowId;
+        copy.mTitle = mTitle;
+        copy.mDate = mDate != null ? new Date(mDate.getTime()) : null;
+        copy.mSolved = mSolved;
+        copy.mSuspect = mSuspect;
+        copy.mPhotoFilename = mPhotoFilename;
+        copy.mDirtyFields = mDirtyFields;
+        return copy;
+    }
+
+    public UUID getId() {
+        return mId;
+    }
+
+    // SQLite _id of the row, or 0 if the crime has not been read from the database
+    public long getRowId() {
+        return mRowId;
+    }
+
+    public void setRowId(long rowId) {
+        mRowId = rowId;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public void setTitle(String title) {
+        if (!Objects.equals(mTitle, title)) {
+            mDirtyFields |= DIRTY_TITLE;
+        }
+        mTitle = title;
+    }
+
+    public Date getDate() {
+        return mDate;
+    }
+
+    public void setDate(Date date) {
+        if (!Objects.equals(mDate, date)) {
+            mDirtyFields |= DIRTY_DATE;
+        }
+        mDate = date;
+    }
+
+    public boolean isSolved() {
+        return mSolved;
+    }
+
+    public void setSolved(boolean solved) {
+        if (mSolved != solved) {
+            mDirtyFields |= DIRTY_SOLVED;
+        }
+        mSolved = solved;
+    }
+
+    public String getSuspect() {
+        return mSuspect;
+    }
+
+    public void setSuspect(String suspect) {
+        if (!Objects.equals(mSuspect, suspect)) {
+            mDirtyFields |= DIRTY_SUSPECT;
+        }
+        mSuspect = suspect;
+    }
+
+    // Built on first use; list and pager reads never ask for it
+    public String getPhotoFilename() {
+        if (mPhotoFilename == null) {
+            mPhotoFilename = "IMG_" + mId.toString() + ".jpg";
+        }
+        return mPhotoFilename;
+    }
+
+    public void setPhotoFilename(String photoFilename) {
+        mPhotoFilename = photoFilename;
+    }
+
+    public int getDirtyFields() {
+        return mDirtyFields;
+    }
+
+    public boolean isDirty() {
+        return mDirtyFields != 0;
+    }
+
+    // Called once the current values match the database row
+    public void clearDirtyFields() {
+        mDirtyFields = 0;
+    }
+
+    // Puts back the bits of a write that failed
+    public void markDirtyFields(int fields) {
+        mDirtyFields |= fields;
+    }
+
+    /**
+     * Clears the bits in fields whose values still equal written's, once
+     * written has been committed. A field edited again since keeps its bit.
+     */
+    public void clearWrittenFields(Crime written, int fields) {
+        int clean = 0;
+        if (Objects.equals(mTitle, written.mTitle)) {
+            clean |= DIRTY_TITLE;
+        }
+        if (Objects.equals(mDate, written.mDate)) {
+            clean |= DIRTY_DATE;
+        }
+        if (mSolved == written.mSolved) {
+            clean |= DIRTY_SOLVED;
+        }
+        if (Objects.equals(mSuspect, written.mSuspect)) {
+            clean |= DIRTY_SUSPECT;
+        }
+        mDirtyFields &= ~(fields & clean);
+    }
+}
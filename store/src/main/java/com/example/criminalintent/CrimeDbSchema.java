@@ -0,0 +1,46 @@
+package com.example.criminalintent;
+
+public class CrimeDbSchema {
+    public static final class CrimeTable {
+        public static final String NAME = "crimes";
+        public static final String INDEX_UUID = "crimes_uuid_idx";
+        public static final String INDEX_DATE = "crimes_date_idx";
+        // Up to version 6; replaced by INDEX_SOLVED_DATE
+        public static final String INDEX_SOLVED = "crimes_solved_idx";
+        // For CrimeQuery filters and sorts, see CrimeSql.createCrimeIndexes
+        public static final String INDEX_SOLVED_DATE = "crimes_solved_date_idx";
+        public static final String INDEX_TITLE = "crimes_title_idx";
+        public static final String INDEX_SOLVED_TITLE = "crimes_solved_title_idx";
+        public static final String INDEX_SUSPECT_DATE = "crimes_suspect_date_idx";
+        // FTS4 index over title and suspect; its docid is the crime's _id
+        public static final String SEARCH_NAME = "crimes_fts";
+        // Rollups kept by triggers on crimes, see CrimeStats
+        public static final String TOTALS_NAME = "crime_totals";
+        public static final String TYPE_COUNTS_NAME = "crime_type_counts";
+
+        public static final class Cols {
+            public static final String ID = "_id";
+            // 16-byte blob, see UuidBytes
+            public static final String UUID = "uuid";
+            public static final String TITLE = "title";
+            public static final String DATE = "date";
+            public static final String SOLVED = "solved";
+            public static final String SUSPECT = "suspect";
+        }
+
+        // Every column a Crime is built from
+        public static final String[] CRIME_COLUMNS = {
+                Cols.ID, Cols.UUID, Cols.TITLE, Cols.DATE, Cols.SOLVED, Cols.SUSPECT
+        };
+
+        // Only what a list row shows, see CrimeSummary
+        public static final String[] SUMMARY_COLUMNS = {
+                Cols.ID, Cols.UUID, Cols.TITLE, Cols.DATE, Cols.SOLVED
+        };
+
+        // Just the keys, see CrimeIdIndex
+        public static final String[] ID_COLUMNS = {
+                Cols.ID, Cols.UUID
+        };
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.criminalintent;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Writes every crime as CSV or JSON to a channel in constant memory: rows are
+ * read chunkRows at a time in row id order and encoded as UTF-8 straight into
+ * one fixed buffer, which is written out whenever it fills. Progress is
+ * reported after each chunk; {@link #cancel()} stops the export at the next one.
+ * Each exporter runs one export.
+ */
+public class CrimeExporter {
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSON("application/json", ".json");
+
+        private final String mMimeType;
+        private final String mExtension;
+
+        Format(String mimeType, String extension) {
+            mMimeType = mimeType;
+            mExtension = extension;
+        }
+
+        public String getMimeType() {
+            return mMimeType;
+        }
+
+        public String getExtension() {
+            return mExtension;
+        }
+    }
+
+    public interface ProgressListener {
+        /** Called on the exporting thread after each chunk; totalRows is an estimate taken up front. */
+        void onProgress(long rows, long totalRows, long bytes);
+    }
+
+    public static final int DEFAULT_CHUNK_ROWS = 2000;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CSV_HEADER = "id,uuid,title,date,solved,suspect\r\n";
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    // Room for the longest run of fixed-width output between two strings (the
+    // JSON row prefix with id and uuid), so only strings check as they go
+    private static final int MIN_ROOM = 128;
+
+    private final Format mFormat;
+    private final int mChunkRows;
+    private final ByteBuffer mBuffer;
+    private final byte[] mDigits = new byte[20];
+    private ProgressListener mListener;
+    private volatile boolean mCancelled;
+
+    private WritableByteChannel mChannel;
+    private long mBytes;
+    private long mRows;
+    private long mLastRowId;
+
+    public CrimeExporter(Format format) {
+        this(format, DEFAULT_CHUNK_ROWS, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CrimeExporter(Format format, int chunkRows, int bufferSize) {
+        mFormat = format;
+        mChunkRows = chunkRows;
+        mBuffer = ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_ROOM * 4));
+    }
+
+    public Format getFormat() {
+        return mFormat;
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        mListener = listener;
+    }
+
+    /** Safe from any thread; the export throws CancellationException at its next chunk. */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Exports every crime in store to channel, leaving the channel open.
+     * Returns the number of rows written.
+     */
+    public long export(CrimeStore store, WritableByteChannel channel) throws IOException {
+        mChannel = channel;
+        mBytes = 0;
+        mRows = 0;
+        mLastRowId = 0;
+        ((Buffer) mBuffer).clear();
+        long totalRows = store.getStats().getTotal();
+
+        putAscii(mFormat == Format.CSV ? CSV_HEADER : "[");
+        CrimeStore.RowVisitor visitor = mFormat == Format.CSV ? this::putCsvRow : this::putJsonRow;
+        int visited;
+        do {
+            if (mCancelled) {
+                throw new CancellationException("Export cancelled after " + mRows + " rows");
+            }
+            try {
+                visited = store.forEachCrime(mLastRowId, mChunkRows, visitor);
+            } catch (WriteFailure e) {
+                throw e.getCause();
+            }
+            if (mListener != null) {
+                mListener.onProgress(mRows, Math.max(totalRows, mRows), mBytes + mBuffer.position());
+            }
+        } while (visited == mChunkRows);
+        if (mFormat == Format.JSON) {
+            ensureRoom();
+            putAscii(mRows == 0 ? "]\n" : "\n]\n");
+        }
+        flush();
+        return mRows;
+    }
+
+    /** Bytes handed to the channel by the last export. */
+    public long getBytesWritten() {
+        return mBytes;
+    }
+
+    private void putCsvRow(long rowId, long uuidMostSigBits, long uuidLeastSigBits, String title,
+            long date, boolean solved, String suspect) {
+        ensureRoom();
+        putLong(rowId);
+        mBuffer.put((byte) ',');
+        putUuid(uuidMostSigBits, uuidLeastSigBits);
+        mBuffer.put((byte) ',');
+        putCsvString(title);
+        ensureRoom();
+        mBuffer.put((byte) ',');
+        putIsoDate(date);
+        mBuffer.put((byte) ',');
+        putAscii(solved ? "true," : "false,");
+        putCsvString(suspect);
+        ensureRoom();
+        mBuffer.put((byte) '\r').put((byte) '\n');
+        endRow(rowId);
+    }
+
+    private void putJsonRow(long rowId, long uuidMostSigBits, long uuidLeastSigBits, String title,
+            long date, boolean solved, String suspect) {
+        ensureRoom();
+        putAscii(mRows == 0 ? "\n{\"id\":" : ",\n{\"id\":");
+        putLong(rowId);
+        putAscii(",\"uuid\":\"");
+        putUuid(uuidMostSigBits, uuidLeastSigBits);
+        putAscii("\",\"title\":");
+        putJsonString(title);
+        ensureRoom();
+        putAscii(",\"date\":\"");
+        putIsoDate(date);
+        putAscii(solved ? "\",\"solved\":true,\"suspect\":" : "\",\"solved\":false,\"suspect\":");
+        putJsonString(suspect);
+        ensureRoom();
+        mBuffer.put((byte) '}');
+        endRow(rowId);
+    }
+
+    private void endRow(long rowId) {
+        mLastRowId = rowId;
+        mRows++;
+    }
+
+    // Null is an empty field; text is always quoted, with quotes doubled
+    private void putCsvString(String value) {
+        if (value == null) {
+            return;
+        }
+        mBuffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            ensureRoom();
+            char c = value.charAt(i);
+            if (c == '"') {
+                mBuffer.put((byte) '"').put((byte) '"');
+            } else {
+                i = putUtf8(value, i);
+            }
+        }
+        ensureRoom();
+        mBuffer.put((byte) '"');
+    }
+
+    private void putJsonString(String value) {
+        if (value == null) {
+            putAscii("null");
+            return;
+        }
+        mBuffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            ensureRoom();
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                mBuffer.put((byte) '\\').put((byte) c);
+            } else if (c == '\n') {
+                mBuffer.put((byte) '\\').put((byte) 'n');
+            } else if (c == '\r') {
+                mBuffer.put((byte) '\\').put((byte) 'r');
+            } else if (c == '\t') {
+                mBuffer.put((byte) '\\').put((byte) 't');
+            } else if (c < 0x20) {
+                mBuffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[c >> 4]).put(HEX[c & 0xf]);
+            } else {
+                i = putUtf8(value, i);
+            }
+        }
+        ensureRoom();
+        mBuffer.put((byte) '"');
+    }
+
+    // Encodes the character at i, or the surrogate pair starting there; returns the last index used
+    private int putUtf8(String value, int i) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+            mBuffer.put((byte) c);
+        } else if (c < 0x800) {
+            mBuffer.put((byte) (0xc0 | (c >> 6)))
+                    .put((byte) (0x80 | (c & 0x3f)));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+            mBuffer.put((byte) (0xf0 | (codePoint >> 18)))
+                    .put((byte) (0x80 | ((codePoint >> 12) & 0x3f)))
+                    .put((byte) (0x80 | ((codePoint >> 6) & 0x3f)))
+                    .put((byte) (0x80 | (codePoint & 0x3f)));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            // An unpaired surrogate has no UTF-8 form
+            mBuffer.put((byte) '?');
+        } else {
+            mBuffer.put((byte) (0xe0 | (c >> 12)))
+                    .put((byte) (0x80 | ((c >> 6) & 0x3f)))
+                    .put((byte) (0x80 | (c & 0x3f)));
+        }
+        return i;
+    }
+
+    // Only for short constants, after ensureRoom
+    private void putAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            mBuffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            mBuffer.put((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            mDigits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            mBuffer.put(mDigits[--count]);
+        }
+    }
+
+    private void putPadded(long value, int width) {
+        for (long scale = pow10(width - 1); scale > 0; scale /= 10) {
+            mBuffer.put((byte) ('0' + (value / scale) % 10));
+        }
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    // The canonical 8-4-4-4-12 form, as UUID.toString writes it
+    private void putUuid(long mostSigBits, long leastSigBits) {
+        putHex(mostSigBits >>> 32, 8);
+        mBuffer.put((byte) '-');
+        putHex(mostSigBits >>> 16, 4);
+        mBuffer.put((byte) '-');
+        putHex(mostSigBits, 4);
+        mBuffer.put((byte) '-');
+        putHex(leastSigBits >>> 48, 4);
+        mBuffer.put((byte) '-');
+        putHex(leastSigBits, 12);
+    }
+
+    private void putHex(long value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            mBuffer.put(HEX[(int) ((value >>> shift) & 0xf)]);
+        }
+    }
+
+    // ISO-8601 in UTC with milliseconds, e.g. 2024-03-01T09:30:00.000Z
+    private void putIsoDate(long millis) {
+        long days = Math.floorDiv(millis, DAY_MILLIS);
+        long millisOfDay = Math.floorMod(millis, DAY_MILLIS);
+
+        // Days since 1970-01-01 to a proleptic Gregorian date, in 400-year eras
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year >= 0 && year <= 9999) {
+            putPadded(year, 4);
+        } else {
+            // ISO-8601 expanded years carry an explicit sign
+            if (year > 9999) {
+                mBuffer.put((byte) '+');
+            }
+            putLong(year);
+        }
+        mBuffer.put((byte) '-');
+        putPadded(month, 2);
+        mBuffer.put((byte) '-');
+        putPadded(day, 2);
+        mBuffer.put((byte) 'T');
+        putPadded(millisOfDay / 3_600_000, 2);
+        mBuffer.put((byte) ':');
+        putPadded(millisOfDay / 60_000 % 60, 2);
+        mBuffer.put((byte) ':');
+        putPadded(millisOfDay / 1000 % 60, 2);
+        mBuffer.put((byte) '.');
+        putPadded(millisOfDay % 1000, 3);
+        mBuffer.put((byte) 'Z');
+    }
+
+    private void ensureRoom() {
+        if (mBuffer.remaining() < MIN_ROOM) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // Rows are written from inside a RowVisitor, which cannot throw checked exceptions
+                throw new WriteFailure(e);
+            }
+        }
+    }
+
+    // Through Buffer: the ByteBuffer overrides javac links to are missing before Android 9
+    private void flush() throws IOException {
+        ((Buffer) mBuffer).flip();
+        while (mBuffer.hasRemaining()) {
+            mBytes += mChannel.write(mBuffer);
+        }
+        ((Buffer) mBuffer).clear();
+    }
+
+    // Carries an IOException out of a RowVisitor. Not UncheckedIOException, which
+    // needs API 24 and is not backported by D8.
+    private static final class WriteFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WriteFailure(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.criminalintent;
+
+import java.util.UUID;
+
+/**
+ * Row ids and UUIDs of every crime in list order, held in primitive arrays:
+ * 24 bytes a crime and no object per row. Enough to page through crimes and
+ * find where one sits without reading any of their other columns. The first
+ * lookup builds two hash tables of positions, another 16 bytes a crime or
+ * less, so later lookups are constant time. Only used from one thread at a time.
+ */
+public class CrimeIdIndex {
+    private final long[] mRowIds;
+    private final long[] mMostSigBits;
+    private final long[] mLeastSigBits;
+    private int mSize;
+    // Open-addressing tables of position + 1, 0 meaning empty, at most half
+    // full. Built by the first lookup and dropped when positions change.
+    private int[] mIdSlots;
+    private int[] mRowIdSlots;
+
+    public CrimeIdIndex(int capacity) {
+        mRowIds = new long[capacity];
+        mMostSigBits = new long[capacity];
+        mLeastSigBits = new long[capacity];
+    }
+
+    // Appends the next crime in list order; used while the index is read
+    public void add(long rowId, UUID id) {
+        add(rowId, id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public void add(long rowId, long mostSigBits, long leastSigBits) {
+        mRowIds[mSize] = rowId;
+        mMostSigBits[mSize] = mostSigBits;
+        mLeastSigBits[mSize] = leastSigBits;
+        mSize++;
+        mIdSlots = null;
+        mRowIdSlots = null;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getRowId(int position) {
+        return mRowIds[position];
+    }
+
+    public UUID getId(int position) {
+        return new UUID(mMostSigBits[position], mLeastSigBits[position]);
+    }
+
+    /** Returns the position of the crime with this UUID, or -1. */
+    public int indexOf(UUID id) {
+        if (id == null) {
+            return -1;
+        }
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        if (mIdSlots == null) {
+            buildSlots();
+        }
+        int mask = mIdSlots.length - 1;
+        for (int slot = hash(most ^ least) & mask; ; slot = (slot + 1) & mask) {
+            int entry = mIdSlots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (mLeastSigBits[entry - 1] == least && mMostSigBits[entry - 1] == most) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /** Returns the position of the crime with this row id, or -1. */
+    public int indexOfRowId(long rowId) {
+        if (mRowIdSlots == null) {
+            buildSlots();
+        }
+        int mask = mRowIdSlots.length - 1;
+        for (int slot = hash(rowId) & mask; ; slot = (slot + 1) & mask) {
+            int entry = mRowIdSlots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (mRowIds[entry - 1] == rowId) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public void remove(int position) {
+        int moved = mSize - position - 1;
+        System.arraycopy(mRowIds, position + 1, mRowIds, position, moved);
+        System.arraycopy(mMostSigBits, position + 1, mMostSigBits, position, moved);
+        System.arraycopy(mLeastSigBits, position + 1, mLeastSigBits, position, moved);
+        mSize--;
+        mIdSlots = null;
+        mRowIdSlots = null;
+    }
+
+    private void buildSlots() {
+        // The smallest power of two at least twice the size
+        int capacity = Integer.highestOneBit(Math.max(4, mSize * 2 - 1)) << 1;
+        int mask = capacity - 1;
+        mIdSlots = new int[capacity];
+        mRowIdSlots = new int[capacity];
+        for (int i = 0; i < mSize; i++) {
+            int slot = hash(mMostSigBits[i] ^ mLeastSigBits[i]) & mask;
+            while (mIdSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mIdSlots[slot] = i + 1;
+
+            slot = hash(mRowIds[i]) & mask;
+            while (mRowIdSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mRowIdSlots[slot] = i + 1;
+        }
+    }
+
+    // Row ids are sequential, so their bits are mixed before masking
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
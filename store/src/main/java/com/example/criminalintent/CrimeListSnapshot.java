@@ -0,0 +1,170 @@
+package com.example.criminalintent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * The first rows of the crime list saved in a small binary file, so the list
+ * can be drawn before the database is open. The file is a 24-byte header
+ * (magic, format version, row count, flags, payload length, CRC-32 of the
+ * payload) followed by one record per row: row id, UUID, date, solved and the
+ * title as length-prefixed UTF-8. All numbers are big-endian.
+ */
+public class CrimeListSnapshot {
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x43524c53; // "CRLS"
+    private static final int HEADER_SIZE = 24;
+    private static final int FLAG_HAS_MORE = 1;
+    private static final int NULL_TITLE = -1;
+    // Row id, UUID, date, solved and the title length of an untitled row
+    private static final int MIN_RECORD_SIZE = 8 + 16 + 8 + 1 + 4;
+
+    private CrimeListSnapshot() {
+    }
+
+    /**
+     * Saves page, the first rows in list order, replacing file. The new file is
+     * written next to it and renamed over it, so readers see the old snapshot or
+     * the new one. Nothing is synced: a file torn by a crash fails its CRC check
+     * and is discarded.
+     */
+    public static void write(File file, CrimePage page) throws IOException {
+        List<CrimeSummary> crimes = page.getCrimes();
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(crimes.size() * 64);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        for (CrimeSummary crime : crimes) {
+            UUID id = crime.getId();
+            payload.writeLong(crime.getRowId());
+            payload.writeLong(id.getMostSignificantBits());
+            payload.writeLong(id.getLeastSignificantBits());
+            payload.writeLong(crime.getDate());
+            payload.writeBoolean(crime.isSolved());
+            if (crime.getTitle() == null) {
+                payload.writeInt(NULL_TITLE);
+            } else {
+                byte[] title = crime.getTitle().getBytes(StandardCharsets.UTF_8);
+                payload.writeInt(title.length);
+                payload.write(title);
+            }
+        }
+        byte[] body = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(crimes.size());
+            out.writeInt(page.getNextKey() != null ? FLAG_HAS_MORE : 0);
+            out.writeInt(body.length);
+            out.writeInt((int) crc.getValue());
+            out.write(body);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Reads a snapshot saved by {@link #write} through a read-only mapping of
+     * file. Its next key is set when more rows followed them in the list.
+     * Returns null when there is no snapshot; one from another format version,
+     * or that fails its checks, is deleted and null is returned too.
+     */
+    public static CrimePage read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size >= HEADER_SIZE && size <= Integer.MAX_VALUE) {
+                CrimePage page = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                if (page != null) {
+                    return page;
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable, so treated like a corrupt snapshot
+        }
+        file.delete();
+        return null;
+    }
+
+    // Takes a ByteBuffer so no MappedByteBuffer override (duplicate() is one since
+    // Java 17) is linked; those are missing on older Android runtimes
+    private static CrimePage decode(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        int rowCount = buffer.getInt();
+        int flags = buffer.getInt();
+        int payloadLength = buffer.getInt();
+        int expectedCrc = buffer.getInt();
+        // The count is outside the CRC, so it must fit the payload before any list is sized by it
+        if (rowCount < 0 || payloadLength != buffer.remaining()
+                || rowCount > payloadLength / MIN_RECORD_SIZE) {
+            return null;
+        }
+        if (crc(buffer.duplicate()) != expectedCrc) {
+            return null;
+        }
+
+        List<CrimeSummary> crimes = new ArrayList<>(rowCount);
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                long rowId = buffer.getLong();
+                long mostSigBits = buffer.getLong();
+                long leastSigBits = buffer.getLong();
+                long date = buffer.getLong();
+                boolean solved = buffer.get() != 0;
+                int titleLength = buffer.getInt();
+                String title = null;
+                if (titleLength != NULL_TITLE) {
+                    if (titleLength < 0 || titleLength > buffer.remaining()) {
+                        return null;
+                    }
+                    byte[] titleBytes = new byte[titleLength];
+                    buffer.get(titleBytes);
+                    title = new String(titleBytes, StandardCharsets.UTF_8);
+                }
+                crimes.add(new CrimeSummary(rowId, mostSigBits, leastSigBits, title, date, solved));
+            }
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+        if (buffer.hasRemaining()) {
+            return null;
+        }
+
+        boolean hasMore = (flags & FLAG_HAS_MORE) != 0 && !crimes.isEmpty();
+        return new CrimePage(crimes, hasMore ? CrimePage.Key.of(crimes.get(crimes.size() - 1)) : null);
+    }
+
+    // CRC32.update(ByteBuffer) needs Android 8, so the mapping is copied through a small array
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+}
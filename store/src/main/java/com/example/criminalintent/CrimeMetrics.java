@@ -0,0 +1,199 @@
+package com.example.criminalintent;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms and call counts per kind of persistence operation, plus
+ * a log of the most recent operations slower than a threshold. Timing a call
+ * costs two nanoTime reads and a few atomic adds; the slow log is only
+ * touched by slow calls. Safe to use from any thread.
+ */
+public class CrimeMetrics {
+    public enum Op {
+        // List order reads: every crime, the id index and keyset pages
+        LIST,
+        // Reads of given crimes by id
+        GET,
+        SEARCH,
+        STATS,
+        // Whole-table work: counting, exporting and rebuilding rollups
+        SCAN,
+        INSERT,
+        UPDATE,
+        DELETE,
+        PHOTO_DECODE
+    }
+
+    public interface SlowOpListener {
+        // Called on the thread that ran the operation, after it finished
+        void onSlowOp(SlowOp op);
+    }
+
+    public static final class SlowOp {
+        private final Op mOp;
+        private final String mDetail;
+        private final long mNanos;
+        private final long mEndMillis;
+
+        SlowOp(Op op, String detail, long nanos, long endMillis) {
+            mOp = op;
+            mDetail = detail;
+            mNanos = nanos;
+            mEndMillis = endMillis;
+        }
+
+        public Op getOp() {
+            return mOp;
+        }
+
+        // What was running, e.g. the CrimeStore method or the photo path; may be null
+        public String getDetail() {
+            return mDetail;
+        }
+
+        public long getNanos() {
+            return mNanos;
+        }
+
+        // Wall clock time the operation ended
+        public long getEndMillis() {
+            return mEndMillis;
+        }
+
+        @Override
+        public String toString() {
+            return mOp + (mDetail != null ? " " + mDetail : "")
+                    + String.format(Locale.US, " took %.1f ms", mNanos / 1e6);
+        }
+    }
+
+    private static final int SLOW_LOG_SIZE = 32;
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[Op.values().length];
+    private final AtomicLongArray mSlowCounts = new AtomicLongArray(Op.values().length);
+    // Most recent last; guarded by itself
+    private final ArrayDeque<SlowOp> mSlowLog = new ArrayDeque<>(SLOW_LOG_SIZE);
+    private volatile long mSlowThresholdNanos;
+    private volatile SlowOpListener mSlowOpListener;
+
+    public CrimeMetrics(long slowThresholdMillis) {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+        setSlowThresholdMillis(slowThresholdMillis);
+    }
+
+    /** Start time to hand to {@link #end}. */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public void end(Op op, long startNanos) {
+        end(op, startNanos, null);
+    }
+
+    /**
+     * Records the time since startNanos under op. detail describes the call
+     * in the slow log; it is only turned into a string when the call was slow,
+     * so pass a constant or an object that is already at hand.
+     */
+    public void end(Op op, long startNanos, Object detail) {
+        long nanos = System.nanoTime() - startNanos;
+        mHistograms[op.ordinal()].record(nanos);
+        if (nanos >= mSlowThresholdNanos) {
+            onSlowOp(new SlowOp(op, detail != null ? detail.toString() : null, nanos,
+                    System.currentTimeMillis()));
+        }
+    }
+
+    public void setSlowThresholdMillis(long millis) {
+        mSlowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mSlowThresholdNanos);
+    }
+
+    public void setSlowOpListener(SlowOpListener listener) {
+        mSlowOpListener = listener;
+    }
+
+    public LatencyHistogram.Snapshot getSnapshot(Op op) {
+        return mHistograms[op.ordinal()].snapshot();
+    }
+
+    public long getSlowCount(Op op) {
+        return mSlowCounts.get(op.ordinal());
+    }
+
+    /** The most recent slow operations, oldest first. */
+    public List<SlowOp> getSlowOps() {
+        synchronized (mSlowLog) {
+            return new ArrayList<>(mSlowLog);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i].reset();
+            mSlowCounts.set(i, 0);
+        }
+        synchronized (mSlowLog) {
+            mSlowLog.clear();
+        }
+    }
+
+    /**
+     * Writes a table of every operation that has run (count, mean, p50, p90,
+     * p99 and max in milliseconds, and how many were slow) followed by the
+     * slow log, each line starting with prefix.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.printf(Locale.US, "%sCrime persistence metrics (slow >= %d ms, percentiles within 2x):%n",
+                prefix, getSlowThresholdMillis());
+        writer.printf(Locale.US, "%s  %-12s %8s %9s %9s %9s %9s %9s %6s%n", prefix,
+                "op", "count", "mean", "p50", "p90", "p99", "max", "slow");
+        for (Op op : Op.values()) {
+            LatencyHistogram.Snapshot snapshot = getSnapshot(op);
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            writer.printf(Locale.US, "%s  %-12s %8d %9.3f %9.3f %9.3f %9.3f %9.3f %6d%n", prefix,
+                    op, snapshot.getCount(), snapshot.getMeanNanos() / 1e6,
+                    snapshot.getPercentileNanos(0.5) / 1e6, snapshot.getPercentileNanos(0.9) / 1e6,
+                    snapshot.getPercentileNanos(0.99) / 1e6, snapshot.getMaxNanos() / 1e6,
+                    getSlowCount(op));
+        }
+
+        List<SlowOp> slowOps = getSlowOps();
+        writer.printf(Locale.US, "%sRecent slow operations: %d%n", prefix, slowOps.size());
+        SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        for (SlowOp slowOp : slowOps) {
+            writer.printf(Locale.US, "%s  %s %s%n", prefix, time.format(new Date(slowOp.getEndMillis())),
+                    slowOp);
+        }
+        writer.flush();
+    }
+
+    private void onSlowOp(SlowOp slowOp) {
+        mSlowCounts.incrementAndGet(slowOp.getOp().ordinal());
+        synchronized (mSlowLog) {
+            if (mSlowLog.size() == SLOW_LOG_SIZE) {
+                mSlowLog.removeFirst();
+            }
+            mSlowLog.addLast(slowOp);
+        }
+        SlowOpListener listener = mSlowOpListener;
+        if (listener != null) {
+            listener.onSlowOp(slowOp);
+        }
+    }
+}
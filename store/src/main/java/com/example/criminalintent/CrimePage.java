@@ -0,0 +1,73 @@
+package com.example.criminalintent;
+
+import java.util.List;
+
+/**
+ * One fixed-size slice of the crime list, in the order of its CrimeQuery
+ * (newest first by default). The next page starts
+ * strictly after {@link #getNextKey()}, so reading page N never has to skip
+ * over the N - 1 pages before it the way an OFFSET query would.
+ */
+public class CrimePage {
+    private final List<CrimeSummary> mCrimes;
+    private final int mSize;
+    private final Key mNextKey;
+
+    public CrimePage(List<CrimeSummary> crimes, Key nextKey) {
+        this(crimes, crimes.size(), nextKey);
+    }
+
+    private CrimePage(List<CrimeSummary> crimes, int size, Key nextKey) {
+        mCrimes = crimes;
+        mSize = size;
+        mNextKey = nextKey;
+    }
+
+    // A page that was only walked to find its boundary, see CrimeStore.getCrimePages
+    public static CrimePage boundary(int size, Key nextKey) {
+        return new CrimePage(null, size, nextKey);
+    }
+
+    // Null for boundary-only pages
+    public List<CrimeSummary> getCrimes() {
+        return mCrimes;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    // Key of the last row on this page, or null when there are no more rows
+    public Key getNextKey() {
+        return mNextKey;
+    }
+
+    // Holds every column a query can sort by; CrimeSql picks the one it needs
+    public static final class Key {
+        private final long mDate;
+        private final String mTitle;
+        private final long mRowId;
+
+        public Key(long date, String title, long rowId) {
+            mDate = date;
+            mTitle = title;
+            mRowId = rowId;
+        }
+
+        public static Key of(CrimeSummary crime) {
+            return new Key(crime.getDate(), crime.getTitle(), crime.getRowId());
+        }
+
+        public long getDate() {
+            return mDate;
+        }
+
+        public String getTitle() {
+            return mTitle;
+        }
+
+        public long getRowId() {
+            return mRowId;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.criminalintent;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Which crimes the list shows and in what order: a sort key and direction,
+ * plus optional filters on solved state, a date range and the suspect.
+ * Immutable; {@link CrimeSql#listWhere} compiles it to parameterized SQL the
+ * crime indexes can answer. Every order ends with _id, so each row has one
+ * position for keyset paging. Untitled crimes sort first by title ascending
+ * and last descending, as SQLite orders NULL.
+ */
+public final class CrimeQuery implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Sort {
+        DATE,
+        TITLE
+    }
+
+    public enum SolvedFilter {
+        ANY,
+        SOLVED,
+        UNSOLVED
+    }
+
+    /** Newest first, every crime: the list's order before there were queries. */
+    public static final CrimeQuery DEFAULT = new Builder().build();
+
+    private final Sort mSort;
+    private final boolean mAscending;
+    private final SolvedFilter mSolved;
+    private final long mFromDate;
+    private final long mToDate;
+    private final String mSuspect;
+
+    private CrimeQuery(Builder builder) {
+        mSort = builder.mSort;
+        mAscending = builder.mAscending;
+        mSolved = builder.mSolved;
+        mFromDate = builder.mFromDate;
+        mToDate = builder.mToDate;
+        mSuspect = builder.mSuspect;
+    }
+
+    public Sort getSort() {
+        return mSort;
+    }
+
+    public boolean isAscending() {
+        return mAscending;
+    }
+
+    public SolvedFilter getSolved() {
+        return mSolved;
+    }
+
+    public boolean hasDateRange() {
+        return mFromDate != Long.MIN_VALUE || mToDate != Long.MAX_VALUE;
+    }
+
+    // Inclusive; Long.MIN_VALUE when there is no lower bound
+    public long getFromDate() {
+        return mFromDate;
+    }
+
+    // Exclusive; Long.MAX_VALUE when there is no upper bound
+    public long getToDate() {
+        return mToDate;
+    }
+
+    // Matched exactly; null for any suspect
+    public String getSuspect() {
+        return mSuspect;
+    }
+
+    /**
+     * Whether a row edited from before to after keeps its place in the results.
+     * False when the edit may have moved it, or taken it out of them; suspects
+     * are not part of a summary, so any edit counts under a suspect filter.
+     */
+    public boolean keepsPosition(CrimeSummary before, CrimeSummary after) {
+        if (mSuspect != null || before.getDate() != after.getDate()) {
+            return false;
+        }
+        if (mSolved != SolvedFilter.ANY && before.isSolved() != after.isSolved()) {
+            return false;
+        }
+        return mSort != Sort.TITLE || Objects.equals(before.getTitle(), after.getTitle());
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CrimeQuery)) {
+            return false;
+        }
+        CrimeQuery other = (CrimeQuery) o;
+        return mSort == other.mSort && mAscending == other.mAscending && mSolved == other.mSolved
+                && mFromDate == other.mFromDate && mToDate == other.mToDate
+                && Objects.equals(mSuspect, other.mSuspect);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mSort, mAscending, mSolved, mFromDate, mToDate, mSuspect);
+    }
+
+    @Override
+    public String toString() {
+        return "CrimeQuery{sort=" + mSort + (mAscending ? " asc" : " desc") + ", solved=" + mSolved
+                + (hasDateRange() ? ", date=[" + mFromDate + ", " + mToDate + ")" : "")
+                + (mSuspect != null ? ", suspect=" + mSuspect : "") + "}";
+    }
+
+    public static final class Builder {
+        private Sort mSort = Sort.DATE;
+        private boolean mAscending;
+        private SolvedFilter mSolved = SolvedFilter.ANY;
+        private long mFromDate = Long.MIN_VALUE;
+        private long mToDate = Long.MAX_VALUE;
+        private String mSuspect;
+
+        public Builder() {
+        }
+
+        private Builder(CrimeQuery query) {
+            mSort = query.mSort;
+            mAscending = query.mAscending;
+            mSolved = query.mSolved;
+            mFromDate = query.mFromDate;
+            mToDate = query.mToDate;
+            mSuspect = query.mSuspect;
+        }
+
+        public Builder sortBy(Sort sort, boolean ascending) {
+            mSort = sort;
+            mAscending = ascending;
+            return this;
+        }
+
+        public Builder solved(SolvedFilter solved) {
+            mSolved = solved;
+            return this;
+        }
+
+        /** Crimes dated from fromDate inclusive to toDate exclusive, in epoch millis. */
+        public Builder dateRange(long fromDate, long toDate) {
+            mFromDate = fromDate;
+            mToDate = toDate;
+            return this;
+        }
+
+        public Builder anyDate() {
+            return dateRange(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /** Only crimes whose suspect is exactly suspect; null or blank for any. */
+        public Builder suspect(String suspect) {
+            mSuspect = suspect == null || suspect.trim().isEmpty() ? null : suspect.trim();
+            return this;
+        }
+
+        public CrimeQuery build() {
+            return new CrimeQuery(this);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.criminalintent;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * SQL shared by every {@link CrimeStore} backend, so the Android database and
+ * the JDBC one used off-device are built and queried the same way.
+ */
+public final class CrimeSql {
+    public static final String INSERT = "INSERT INTO " + CrimeTable.NAME + " (" +
+            CrimeTable.Cols.UUID + ", " +
+            CrimeTable.Cols.TITLE + ", " +
+            CrimeTable.Cols.DATE + ", " +
+            CrimeTable.Cols.SOLVED + ", " +
+            CrimeTable.Cols.SUSPECT +
+            ") VALUES (?, ?, ?, ?, ?)";
+    public static final String UPDATE = updateSql(Crime.ALL_FIELDS);
+    public static final String DELETE = "DELETE FROM " + CrimeTable.NAME +
+            " WHERE " + CrimeTable.Cols.UUID + " = ?";
+    public static final String BY_UUID = CrimeTable.Cols.UUID + " = ?";
+
+    // Newest first; _id breaks ties so every row has a unique position for keyset paging
+    public static final String LIST_ORDER = orderBy(CrimeQuery.DEFAULT);
+
+    // Chunks of the whole table for exports, in insertion order
+    public static final String AFTER_ROW_ID = CrimeTable.Cols.ID + " > ?";
+    public static final String ROW_ID_ORDER = CrimeTable.Cols.ID;
+
+    // Crimes whose every term matches in the title rank above those matched only
+    // through the suspect; each half is an FTS lookup, the join is by rowid.
+    // Columns come back in SUMMARY_COLUMNS order; the limit is appended.
+    public static final String SEARCH = "SELECT " +
+            "c." + CrimeTable.Cols.ID + " AS " + CrimeTable.Cols.ID + ", " +
+            "c." + CrimeTable.Cols.UUID + " AS " + CrimeTable.Cols.UUID + ", " +
+            "c." + CrimeTable.Cols.TITLE + " AS " + CrimeTable.Cols.TITLE + ", " +
+            "c." + CrimeTable.Cols.DATE + " AS " + CrimeTable.Cols.DATE + ", " +
+            "c." + CrimeTable.Cols.SOLVED + " AS " + CrimeTable.Cols.SOLVED + ", " +
+            "MIN(m.rank) AS rank" +
+            " FROM " + CrimeTable.NAME + " c JOIN (" +
+            "SELECT docid, 0 AS rank FROM " + CrimeTable.SEARCH_NAME +
+            " WHERE " + CrimeTable.SEARCH_NAME + " MATCH ?" +
+            " UNION ALL " +
+            "SELECT docid, 1 AS rank FROM " + CrimeTable.SEARCH_NAME +
+            " WHERE " + CrimeTable.SEARCH_NAME + " MATCH ?" +
+            ") m ON c." + CrimeTable.Cols.ID + " = m.docid" +
+            " GROUP BY c." + CrimeTable.Cols.ID +
+            " ORDER BY rank, c." + CrimeTable.Cols.DATE + " DESC, c." + CrimeTable.Cols.ID + " DESC" +
+            " LIMIT ";
+    // The same counts straight from crimes, for checking and rebuilding the rollups
+    public static final String COUNT_TOTALS = "SELECT COUNT(*), IFNULL(SUM(" + CrimeTable.Cols.SOLVED +
+            "), 0) FROM " + CrimeTable.NAME;
+    public static final String COUNT_TYPES = "SELECT " + crimeType("") + " AS type, COUNT(*), SUM(" +
+            CrimeTable.Cols.SOLVED + ") FROM " + CrimeTable.NAME + " GROUP BY type";
+    // Type, total and solved rows in one statement, so totals and types come from
+    // the same snapshot: first the totals with a NULL type (ORDER BY puts it
+    // first), then one row per type. STATS reads the rollups in TOTALS_NAME and
+    // TYPE_COUNTS_NAME, COUNTS counts crimes itself.
+    public static final String STATS = "SELECT NULL, total, solved FROM " + CrimeTable.TOTALS_NAME +
+            " UNION ALL SELECT type, total, solved FROM " + CrimeTable.TYPE_COUNTS_NAME +
+            " WHERE total > 0 ORDER BY 1";
+    public static final String COUNTS = "SELECT NULL, COUNT(*), IFNULL(SUM(" + CrimeTable.Cols.SOLVED +
+            "), 0) FROM " + CrimeTable.NAME + " UNION ALL " + COUNT_TYPES + " ORDER BY 1";
+
+    // Anything the FTS tokenizer would split on, including its query operators
+    private static final Pattern SEARCH_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private CrimeSql() {
+    }
+
+    public static String createCrimeTable(String tableName) {
+        return "create table " + tableName + "(" +
+                " _id integer primary key autoincrement, " +
+                CrimeTable.Cols.UUID + " blob not null, " +
+                CrimeTable.Cols.TITLE + " text, " +
+                CrimeTable.Cols.DATE + " integer not null default 0, " +
+                CrimeTable.Cols.SOLVED + " integer not null default 0, " +
+                CrimeTable.Cols.SUSPECT + " text" +
+                ")";
+    }
+
+    // Every index ends in the rowid, so each one also serves "ORDER BY its last
+    // column, _id". The solved and suspect ones let a filtered list seek straight
+    // to its rows already in order. "if not exists" lets upgrades rerun this.
+    public static String[] createCrimeIndexes() {
+        String table = CrimeTable.NAME;
+        String date = CrimeTable.Cols.DATE;
+        String title = CrimeTable.Cols.TITLE;
+        String solved = CrimeTable.Cols.SOLVED;
+        return new String[] {
+                "create unique index if not exists " + CrimeTable.INDEX_UUID +
+                        " on " + table + "(" + CrimeTable.Cols.UUID + ")",
+                "create index if not exists " + CrimeTable.INDEX_DATE + " on " + table + "(" + date + ")",
+                "create index if not exists " + CrimeTable.INDEX_SOLVED_DATE +
+                        " on " + table + "(" + solved + ", " + date + ")",
+                "create index if not exists " + CrimeTable.INDEX_TITLE + " on " + table + "(" + title + ")",
+                "create index if not exists " + CrimeTable.INDEX_SOLVED_TITLE +
+                        " on " + table + "(" + solved + ", " + title + ")",
+                "create index if not exists " + CrimeTable.INDEX_SUSPECT_DATE +
+                        " on " + table + "(" + CrimeTable.Cols.SUSPECT + ", " + date + ")"
+        };
+    }
+
+    // The FTS table stores only the index (content=crimes), so the triggers keep
+    // it in step with every write and 'rebuild' backfills rows that already exist.
+    // prefix="2,3" adds short-prefix indexes so "bur*" does not scan the term list.
+    public static String[] createSearchIndex() {
+        String fts = CrimeTable.SEARCH_NAME;
+        String table = CrimeTable.NAME;
+        String title = CrimeTable.Cols.TITLE;
+        String suspect = CrimeTable.Cols.SUSPECT;
+        return new String[] {
+                "create virtual table " + fts + " using fts4(" +
+                        "content=\"" + table + "\", " + title + ", " + suspect + ", prefix=\"2,3\")",
+                "create trigger " + fts + "_ai after insert on " + table + " begin" +
+                        " insert into " + fts + "(docid, " + title + ", " + suspect + ")" +
+                        " values (new._id, new." + title + ", new." + suspect + ");" +
+                        " end",
+                "create trigger " + fts + "_bd before delete on " + table + " begin" +
+                        " delete from " + fts + " where docid = old._id;" +
+                        " end",
+                // Only edits to indexed columns touch the index, not the solved checkbox
+                "create trigger " + fts + "_bu before update of " + title + ", " + suspect +
+                        " on " + table + " begin" +
+                        " delete from " + fts + " where docid = old._id;" +
+                        " end",
+                "create trigger " + fts + "_au after update of " + title + ", " + suspect +
+                        " on " + table + " begin" +
+                        " insert into " + fts + "(docid, " + title + ", " + suspect + ")" +
+                        " values (new._id, new." + title + ", new." + suspect + ");" +
+                        " end",
+                "insert into " + fts + "(" + fts + ") values ('rebuild')"
+        };
+    }
+
+    // The single row of totals plus a row per crime type, each kept exact by the
+    // triggers: a type row is created on its first crime and removed with its
+    // last. Only edits to title or solved can move the counts.
+    public static String[] createCounters() {
+        String totals = CrimeTable.TOTALS_NAME;
+        String types = CrimeTable.TYPE_COUNTS_NAME;
+        String table = CrimeTable.NAME;
+        String solved = CrimeTable.Cols.SOLVED;
+        return new String[] {
+                "create table " + totals + "(" +
+                        " total integer not null, " +
+                        " solved integer not null)",
+                "create table " + types + "(" +
+                        " type text not null primary key, " +
+                        " total integer not null default 0, " +
+                        " solved integer not null default 0)",
+                "create trigger " + types + "_ai after insert on " + table + " begin" +
+                        " update " + totals + " set total = total + 1, solved = solved + new." + solved + ";" +
+                        addToType("new") +
+                        " end",
+                "create trigger " + types + "_ad after delete on " + table + " begin" +
+                        " update " + totals + " set total = total - 1, solved = solved - old." + solved + ";" +
+                        removeFromType("old") +
+                        " end",
+                "create trigger " + types + "_au after update of " + CrimeTable.Cols.TITLE + ", " + solved +
+                        " on " + table + " begin" +
+                        " update " + totals + " set solved = solved - old." + solved + " + new." + solved + ";" +
+                        removeFromType("old") +
+                        addToType("new") +
+                        " end",
+                "insert into " + totals + "(total, solved) " + COUNT_TOTALS,
+                "insert into " + types + "(type, total, solved) " + COUNT_TYPES
+        };
+    }
+
+    /** Recomputes the rollups of createCounters from the crimes table; run it in a transaction. */
+    public static String[] rebuildCounters() {
+        return new String[] {
+                "delete from " + CrimeTable.TOTALS_NAME,
+                "delete from " + CrimeTable.TYPE_COUNTS_NAME,
+                "insert into " + CrimeTable.TOTALS_NAME + "(total, solved) " + COUNT_TOTALS,
+                "insert into " + CrimeTable.TYPE_COUNTS_NAME + "(type, total, solved) " + COUNT_TYPES
+        };
+    }
+
+    // Title up to the first " - ", or all of it; '' when there is none
+    private static String crimeType(String row) {
+        String title = row + CrimeTable.Cols.TITLE;
+        return "(case when instr(" + title + ", ' - ') > 0" +
+                " then substr(" + title + ", 1, instr(" + title + ", ' - ') - 1)" +
+                " else ifnull(" + title + ", '') end)";
+    }
+
+    private static String addToType(String row) {
+        String types = CrimeTable.TYPE_COUNTS_NAME;
+        return " insert or ignore into " + types + "(type) values (" + crimeType(row + ".") + ");" +
+                " update " + types + " set total = total + 1, solved = solved + " + row + "." +
+                CrimeTable.Cols.SOLVED + " where type = " + crimeType(row + ".") + ";";
+    }
+
+    private static String removeFromType(String row) {
+        String types = CrimeTable.TYPE_COUNTS_NAME;
+        return " update " + types + " set total = total - 1, solved = solved - " + row + "." +
+                CrimeTable.Cols.SOLVED + " where type = " + crimeType(row + ".") + ";" +
+                " delete from " + types + " where type = " + crimeType(row + ".") + " and total = 0;";
+    }
+
+    public static String[] dropSearchIndex() {
+        String fts = CrimeTable.SEARCH_NAME;
+        return new String[] {
+                "drop trigger if exists " + fts + "_ai",
+                "drop trigger if exists " + fts + "_bd",
+                "drop trigger if exists " + fts + "_bu",
+                "drop trigger if exists " + fts + "_au",
+                "drop table if exists " + fts
+        };
+    }
+
+    /**
+     * UPDATE of just the columns in fields (Crime.DIRTY_* bits), binding them
+     * in title, date, solved, suspect order and then the uuid.
+     */
+    public static String updateSql(int fields) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(CrimeTable.NAME).append(" SET ");
+        String separator = "";
+        if ((fields & Crime.DIRTY_TITLE) != 0) {
+            sql.append(CrimeTable.Cols.TITLE).append(" = ?");
+            separator = ", ";
+        }
+        if ((fields & Crime.DIRTY_DATE) != 0) {
+            sql.append(separator).append(CrimeTable.Cols.DATE).append(" = ?");
+            separator = ", ";
+        }
+        if ((fields & Crime.DIRTY_SOLVED) != 0) {
+            sql.append(separator).append(CrimeTable.Cols.SOLVED).append(" = ?");
+            separator = ", ";
+        }
+        if ((fields & Crime.DIRTY_SUSPECT) != 0) {
+            sql.append(separator).append(CrimeTable.Cols.SUSPECT).append(" = ?");
+        }
+        return sql.append(" WHERE ").append(BY_UUID).toString();
+    }
+
+    /**
+     * A WHERE clause, or null for none, and its arguments in placeholder order.
+     * The arguments are Longs and Strings, which bind the same through JDBC and
+     * as the string arguments of Android's query methods.
+     */
+    public static final class Where {
+        private final String mSql;
+        private final Object[] mArgs;
+
+        Where(String sql, Object[] args) {
+            mSql = sql;
+            mArgs = args;
+        }
+
+        public String getSql() {
+            return mSql;
+        }
+
+        public Object[] getArgs() {
+            return mArgs;
+        }
+
+        // Null when there are none, as SQLiteDatabase.query expects
+        public String[] getStringArgs() {
+            if (mArgs.length == 0) {
+                return null;
+            }
+            String[] args = new String[mArgs.length];
+            for (int i = 0; i < mArgs.length; i++) {
+                args[i] = String.valueOf(mArgs[i]);
+            }
+            return args;
+        }
+    }
+
+    public static String orderBy(CrimeQuery query) {
+        String column = query.getSort() == CrimeQuery.Sort.TITLE ? CrimeTable.Cols.TITLE
+                : CrimeTable.Cols.DATE;
+        String direction = query.isAscending() ? " ASC" : " DESC";
+        return column + direction + ", " + CrimeTable.Cols.ID + direction;
+    }
+
+    /**
+     * The WHERE clauses that read query's rows strictly after the key, or from
+     * the first row for null, in {@link #orderBy} order. Run them in turn until
+     * the page is full. A title key can need two: untitled rows cannot be
+     * reached by comparing titles, so a page that crosses between titled and
+     * untitled rows continues with a second clause.
+     */
+    public static List<Where> listWhere(CrimeQuery query, CrimePage.Key after) {
+        StringBuilder filters = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        if (query.getSolved() != CrimeQuery.SolvedFilter.ANY) {
+            and(filters).append(CrimeTable.Cols.SOLVED).append(" = ?");
+            args.add(query.getSolved() == CrimeQuery.SolvedFilter.SOLVED ? 1L : 0L);
+        }
+        if (query.getFromDate() != Long.MIN_VALUE) {
+            and(filters).append(CrimeTable.Cols.DATE).append(" >= ?");
+            args.add(query.getFromDate());
+        }
+        if (query.getToDate() != Long.MAX_VALUE) {
+            and(filters).append(CrimeTable.Cols.DATE).append(" < ?");
+            args.add(query.getToDate());
+        }
+        if (query.getSuspect() != null) {
+            and(filters).append(CrimeTable.Cols.SUSPECT).append(" = ?");
+            args.add(query.getSuspect());
+        }
+
+        List<Where> clauses = new ArrayList<>(2);
+        if (after == null) {
+            clauses.add(where(filters, args, null));
+            return clauses;
+        }
+        String op = query.isAscending() ? ">" : "<";
+        String title = CrimeTable.Cols.TITLE;
+        if (query.getSort() == CrimeQuery.Sort.DATE) {
+            clauses.add(where(filters, args, afterKey(CrimeTable.Cols.DATE, op),
+                    after.getDate(), after.getDate(), after.getRowId()));
+        } else if (after.getTitle() != null) {
+            clauses.add(where(filters, args, afterKey(title, op),
+                    after.getTitle(), after.getTitle(), after.getRowId()));
+            if (!query.isAscending()) {
+                // Untitled rows come last when descending
+                clauses.add(where(filters, args, title + " IS NULL"));
+            }
+        } else {
+            clauses.add(where(filters, args, title + " IS NULL AND " + CrimeTable.Cols.ID + " " + op + " ?",
+                    after.getRowId()));
+            if (query.isAscending()) {
+                // and first when ascending
+                clauses.add(where(filters, args, title + " IS NOT NULL"));
+            }
+        }
+        return clauses;
+    }
+
+    // Rows strictly after (value, _id). The leading bound on the column lets
+    // SQLite seek in its index instead of walking it from the start.
+    private static String afterKey(String column, String op) {
+        return column + " " + op + "= ? AND (" + column + " " + op + " ? OR " +
+                CrimeTable.Cols.ID + " " + op + " ?)";
+    }
+
+    private static StringBuilder and(StringBuilder where) {
+        return where.length() == 0 ? where : where.append(" AND ");
+    }
+
+    private static Where where(StringBuilder filters, List<Object> filterArgs, String key,
+            Object... keyArgs) {
+        StringBuilder sql = new StringBuilder(filters);
+        if (key != null) {
+            and(sql).append(key);
+        }
+        List<Object> args = new ArrayList<>(filterArgs);
+        for (Object arg : keyArgs) {
+            args.add(arg);
+        }
+        return new Where(sql.length() == 0 ? null : sql.toString(), args.toArray());
+    }
+
+    public static String select(String[] columns, String where, String orderBy, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns[i]);
+        }
+        sql.append(" FROM ").append(CrimeTable.NAME);
+        if (where != null) {
+            sql.append(" WHERE ").append(where);
+        }
+        if (orderBy != null) {
+            sql.append(" ORDER BY ").append(orderBy);
+        }
+        if (limit > 0) {
+            sql.append(" LIMIT ").append(limit);
+        }
+        return sql.toString();
+    }
+
+    // "uuid IN (?, ?, ...)" with count placeholders, each bound to UuidBytes.toBytes
+    public static String uuidIn(int count) {
+        StringBuilder where = new StringBuilder(CrimeTable.Cols.UUID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            where.append(i == 0 ? "?" : ", ?");
+        }
+        return where.append(')').toString();
+    }
+
+    // "uuid IN (X'...', ...)", for APIs that can only bind strings
+    public static String uuidIn(Collection<UUID> ids) {
+        StringBuilder where = new StringBuilder(CrimeTable.Cols.UUID).append(" IN (");
+        String separator = "";
+        for (UUID id : ids) {
+            where.append(separator).append(UuidBytes.toSqlLiteral(id));
+            separator = ", ";
+        }
+        return where.append(')').toString();
+    }
+
+    /**
+     * The two MATCH arguments of {@link #SEARCH} for a user query: every word
+     * as a prefix term in the title only, then in any column. Words are
+     * lowercased, and quoted as phrases where FTS4 allows it (a column filter
+     * ignores a quoted phrase), so AND, OR, NOT and NEAR are searched for
+     * rather than obeyed. Returns null when the query has no searchable words.
+     */
+    public static String[] searchArgs(String query) {
+        StringBuilder anyColumn = new StringBuilder();
+        StringBuilder titleOnly = new StringBuilder();
+        for (String term : SEARCH_SEPARATORS.split(query.trim())) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            // Operators are only recognised in upper case; the tokenizer folds case anyway
+            term = term.toLowerCase(Locale.ROOT);
+            // Terms are ANDed; the trailing * makes each one a prefix query
+            anyColumn.append('"').append(term).append("*\" ");
+            titleOnly.append(CrimeTable.Cols.TITLE).append(':').append(term).append("* ");
+        }
+        if (anyColumn.length() == 0) {
+            return null;
+        }
+        return new String[] { titleOnly.toString().trim(), anyColumn.toString().trim() };
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.criminalintent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Crime totals, solved and unsolved counts, and the same per crime type. The
+ * type of a crime is its title up to the first " - ", e.g. "Burglary" for
+ * "Burglary - Bank"; untitled crimes have the empty type.
+ */
+public class CrimeStats {
+    private final int mTotal;
+    private final int mSolved;
+    private final Map<String, TypeCount> mTypes = new TreeMap<>();
+
+    public CrimeStats(int total, int solved) {
+        mTotal = total;
+        mSolved = solved;
+    }
+
+    // Used while the stats are read
+    public void addType(String type, int total, int solved) {
+        mTypes.put(type, new TypeCount(type, total, solved));
+    }
+
+    public int getTotal() {
+        return mTotal;
+    }
+
+    public int getSolved() {
+        return mSolved;
+    }
+
+    public int getUnsolved() {
+        return mTotal - mSolved;
+    }
+
+    /** Counts of the given type, or null when there is no crime of that type. */
+    public TypeCount getType(String type) {
+        return mTypes.get(type);
+    }
+
+    /** Every type with at least one crime, most crimes first. */
+    public List<TypeCount> getTypes() {
+        List<TypeCount> types = new ArrayList<>(mTypes.values());
+        Collections.sort(types, (a, b) -> Integer.compare(b.getTotal(), a.getTotal()));
+        return types;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CrimeStats)) {
+            return false;
+        }
+        CrimeStats other = (CrimeStats) o;
+        return mTotal == other.mTotal && mSolved == other.mSolved && mTypes.equals(other.mTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mTotal, mSolved, mTypes);
+    }
+
+    @Override
+    public String toString() {
+        return "CrimeStats{total=" + mTotal + ", solved=" + mSolved + ", types=" + mTypes.values() + "}";
+    }
+
+    public static final class TypeCount {
+        private final String mType;
+        private final int mTotal;
+        private final int mSolved;
+
+        public TypeCount(String type, int total, int solved) {
+            mType = type;
+            mTotal = total;
+            mSolved = solved;
+        }
+
+        public String getType() {
+            return mType;
+        }
+
+        public int getTotal() {
+            return mTotal;
+        }
+
+        public int getSolved() {
+            return mSolved;
+        }
+
+        public int getUnsolved() {
+            return mTotal - mSolved;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TypeCount)) {
+                return false;
+            }
+            TypeCount other = (TypeCount) o;
+            return mTotal == other.mTotal && mSolved == other.mSolved && mType.equals(other.mType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mType, mTotal, mSolved);
+        }
+
+        @Override
+        public String toString() {
+            return mType + "=" + mSolved + "/" + mTotal;
+        }
+    }
+}
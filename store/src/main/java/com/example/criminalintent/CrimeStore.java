@@ -0,0 +1,81 @@
+package com.example.criminalintent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reads and writes crime rows. CrimeLab runs its cache, change events and
+ * threading on top of this; the Android app uses the SQLiteDatabase backend
+ * and the JVM tests and benchmarks use {@link JdbcCrimeStore}. Implementations
+ * are not thread-safe unless they say otherwise.
+ */
+public interface CrimeStore {
+    /** Receives crime rows without a Crime being built for each. */
+    interface RowVisitor {
+        void visit(long rowId, long uuidMostSigBits, long uuidLeastSigBits, String title, long date,
+                boolean solved, String suspect);
+    }
+
+    long count();
+
+    /** Every crime, in list order. */
+    List<Crime> getCrimes();
+
+    /** The crimes with the given ids, in no particular order; keep it under 999 ids. */
+    List<Crime> getCrimes(Collection<UUID> ids);
+
+    Crime getCrime(UUID id);
+
+    CrimeIdIndex getCrimeIdIndex();
+
+    /**
+     * Visits up to limit crimes with a row id above afterRowId, in row id
+     * order, and returns how many it visited; fewer than limit means there
+     * are no more. Walking the table this way keeps one chunk in memory.
+     */
+    int forEachCrime(long afterRowId, int limit, RowVisitor visitor);
+
+    /** Up to pageSize of query's crimes after the key, or its first page for null. */
+    CrimePage getCrimePage(CrimeQuery query, CrimePage.Key after, int pageSize);
+
+    /**
+     * query's first pageCount pages read in one pass; pages not in materialize
+     * only carry their size and boundary key.
+     */
+    List<CrimePage> getCrimePages(CrimeQuery query, int pageCount, int pageSize, Set<Integer> materialize);
+
+    /** List rows of the given crimes, in no particular order; keep it under 999 ids. */
+    List<CrimeSummary> getCrimeSummaries(Collection<UUID> ids);
+
+    /** Prefix search over title and suspect, title matches first, then newest first. */
+    List<CrimeSummary> searchCrimes(String query, int limit);
+
+    /** The trigger-kept rollups; a couple of small reads, whatever the number of crimes. */
+    CrimeStats getStats();
+
+    /** The same stats counted from the crimes themselves, scanning every row. */
+    CrimeStats countStats();
+
+    /** Recomputes the rollups behind getStats from the crimes, in one transaction. */
+    void rebuildStats();
+
+    /** Returns false if the row could not be inserted. */
+    boolean insertCrime(Crime crime);
+
+    /** Writes the columns in fields (Crime.DIRTY_* bits); returns false if no row matched. */
+    boolean updateCrime(Crime crime, int fields);
+
+    boolean setCrimeSolved(UUID id, boolean solved);
+
+    boolean deleteCrime(UUID id);
+
+    // The bulk writes run in one transaction and return the ids actually written
+
+    List<UUID> insertCrimes(Collection<Crime> crimes);
+
+    List<UUID> updateCrimes(Collection<Crime> crimes);
+
+    List<UUID> deleteCrimes(Collection<UUID> ids);
+}
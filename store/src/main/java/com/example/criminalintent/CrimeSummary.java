@@ -0,0 +1,66 @@
+package com.example.criminalintent;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Read-only row of the crime list. It carries only what a list item shows,
+ * keeps the date as epoch millis and the UUID as its two longs until asked for.
+ */
+public class CrimeSummary {
+    private final long mRowId;
+    private final long mMostSigBits;
+    private final long mLeastSigBits;
+    private final String mTitle;
+    private final long mDate;
+    private final boolean mSolved;
+
+    public CrimeSummary(long rowId, long mostSigBits, long leastSigBits, String title, long date,
+            boolean solved) {
+        mRowId = rowId;
+        mMostSigBits = mostSigBits;
+        mLeastSigBits = leastSigBits;
+        mTitle = title;
+        mDate = date;
+        mSolved = solved;
+    }
+
+    public long getRowId() {
+        return mRowId;
+    }
+
+    public UUID getId() {
+        return new UUID(mMostSigBits, mLeastSigBits);
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    public boolean isSolved() {
+        return mSolved;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CrimeSummary)) {
+            return false;
+        }
+        CrimeSummary other = (CrimeSummary) o;
+        return mRowId == other.mRowId && mMostSigBits == other.mMostSigBits
+                && mLeastSigBits == other.mLeastSigBits && mDate == other.mDate
+                && mSolved == other.mSolved && Objects.equals(mTitle, other.mTitle);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mRowId);
+    }
+}
@@ -0,0 +1,463 @@
+package com.example.criminalintent;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link CrimeStore} over a JDBC SQLite connection (e.g. xerial sqlite-jdbc),
+ * so the persistence layer can be tested and benchmarked on a plain JVM.
+ * Statements are compiled once per distinct SQL and kept, the way
+ * SQLiteDatabase caches them on Android. Failures surface as
+ * IllegalStateException wrapping the SQLException.
+ */
+public class JdbcCrimeStore implements CrimeStore, AutoCloseable {
+    private final Connection mConnection;
+    private final Map<String, PreparedStatement> mStatements = new HashMap<>();
+
+    public JdbcCrimeStore(Connection connection) {
+        mConnection = connection;
+    }
+
+    /** Creates the same tables, indexes and triggers as CrimeBaseHelper.onCreate. */
+    public static void createSchema(Connection connection) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CrimeSql.createCrimeTable(CrimeTable.NAME));
+            for (String sql : CrimeSql.createCrimeIndexes()) {
+                statement.execute(sql);
+            }
+            for (String sql : CrimeSql.createSearchIndex()) {
+                statement.execute(sql);
+            }
+            for (String sql : CrimeSql.createCounters()) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create the crime schema", e);
+        }
+    }
+
+    @Override
+    public long count() {
+        try (ResultSet rows = prepare("SELECT COUNT(*) FROM " + CrimeTable.NAME).executeQuery()) {
+            return rows.next() ? rows.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public List<Crime> getCrimes() {
+        return queryCrimes(CrimeSql.select(CrimeTable.CRIME_COLUMNS, null, CrimeSql.LIST_ORDER, 0));
+    }
+
+    @Override
+    public List<Crime> getCrimes(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return queryCrimes(CrimeSql.select(CrimeTable.CRIME_COLUMNS, CrimeSql.uuidIn(ids.size()), null, 0),
+                uuidArgs(ids));
+    }
+
+    @Override
+    public Crime getCrime(UUID id) {
+        List<Crime> crimes = queryCrimes(
+                CrimeSql.select(CrimeTable.CRIME_COLUMNS, CrimeSql.BY_UUID, null, 0),
+                (Object) UuidBytes.toBytes(id));
+        return crimes.isEmpty() ? null : crimes.get(0);
+    }
+
+    @Override
+    public CrimeIdIndex getCrimeIdIndex() {
+        // Sized from a count first, as the Android cursor would report it
+        CrimeIdIndex index = new CrimeIdIndex((int) count());
+        String sql = CrimeSql.select(CrimeTable.ID_COLUMNS, null, CrimeSql.LIST_ORDER, 0);
+        try (ResultSet rows = prepare(sql).executeQuery()) {
+            while (rows.next()) {
+                byte[] uuid = rows.getBytes(2);
+                index.add(rows.getLong(1), UuidBytes.mostSigBits(uuid), UuidBytes.leastSigBits(uuid));
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        return index;
+    }
+
+    @Override
+    public int forEachCrime(long afterRowId, int limit, RowVisitor visitor) {
+        String sql = CrimeSql.select(CrimeTable.CRIME_COLUMNS, CrimeSql.AFTER_ROW_ID,
+                CrimeSql.ROW_ID_ORDER, limit);
+        int visited = 0;
+        try (ResultSet rows = query(sql, new Object[] { afterRowId })) {
+            while (rows.next()) {
+                byte[] uuid = rows.getBytes(2);
+                visitor.visit(rows.getLong(1), UuidBytes.mostSigBits(uuid), UuidBytes.leastSigBits(uuid),
+                        rows.getString(3), rows.getLong(4), rows.getInt(5) != 0, rows.getString(6));
+                visited++;
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        return visited;
+    }
+
+    @Override
+    public CrimePage getCrimePage(CrimeQuery query, CrimePage.Key after, int pageSize) {
+        List<CrimeSummary> crimes = new ArrayList<>(pageSize);
+        String orderBy = CrimeSql.orderBy(query);
+        for (CrimeSql.Where where : CrimeSql.listWhere(query, after)) {
+            if (crimes.size() == pageSize) {
+                break;
+            }
+            crimes.addAll(querySummaries(CrimeSql.select(CrimeTable.SUMMARY_COLUMNS, where.getSql(),
+                    orderBy, pageSize - crimes.size()), where.getArgs()));
+        }
+        CrimePage.Key nextKey = crimes.size() < pageSize ? null
+                : CrimePage.Key.of(crimes.get(crimes.size() - 1));
+        return new CrimePage(crimes, nextKey);
+    }
+
+    @Override
+    public List<CrimePage> getCrimePages(CrimeQuery query, int pageCount, int pageSize,
+            Set<Integer> materialize) {
+        List<CrimePage> pages = new ArrayList<>(pageCount);
+        CrimeSql.Where where = CrimeSql.listWhere(query, null).get(0);
+        String sql = CrimeSql.select(CrimeTable.SUMMARY_COLUMNS, where.getSql(), CrimeSql.orderBy(query),
+                pageCount * pageSize);
+        try (ResultSet rows = query(sql, where.getArgs())) {
+            List<CrimeSummary> crimes = null;
+            int row = 0;
+            while (rows.next()) {
+                int pageIndex = row / pageSize;
+                if (row % pageSize == 0) {
+                    crimes = materialize.contains(pageIndex) ? new ArrayList<>(pageSize) : null;
+                }
+                if (crimes != null) {
+                    crimes.add(readSummary(rows));
+                }
+                row++;
+                if (row % pageSize == 0) {
+                    CrimePage.Key nextKey = new CrimePage.Key(rows.getLong(4), rows.getString(3),
+                            rows.getLong(1));
+                    pages.add(crimes != null ? new CrimePage(crimes, nextKey)
+                            : CrimePage.boundary(pageSize, nextKey));
+                }
+            }
+
+            if (row < pageCount * pageSize) {
+                int size = row % pageSize;
+                if (size == 0) {
+                    pages.add(new CrimePage(new ArrayList<>(), null));
+                } else if (crimes != null) {
+                    pages.add(new CrimePage(crimes, null));
+                } else {
+                    pages.add(CrimePage.boundary(size, null));
+                }
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        return pages;
+    }
+
+    @Override
+    public List<CrimeSummary> getCrimeSummaries(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return querySummaries(CrimeSql.select(CrimeTable.SUMMARY_COLUMNS, CrimeSql.uuidIn(ids.size()),
+                null, 0), uuidArgs(ids));
+    }
+
+    @Override
+    public List<CrimeSummary> searchCrimes(String query, int limit) {
+        String[] matches = CrimeSql.searchArgs(query);
+        if (matches == null) {
+            return new ArrayList<>();
+        }
+        return querySummaries(CrimeSql.SEARCH + limit, (Object[]) matches);
+    }
+
+    @Override
+    public CrimeStats getStats() {
+        return queryStats(CrimeSql.STATS);
+    }
+
+    @Override
+    public CrimeStats countStats() {
+        return queryStats(CrimeSql.COUNTS);
+    }
+
+    @Override
+    public void rebuildStats() {
+        inTransaction(() -> {
+            try (Statement statement = mConnection.createStatement()) {
+                for (String sql : CrimeSql.rebuildCounters()) {
+                    statement.execute(sql);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean insertCrime(Crime crime) {
+        try {
+            PreparedStatement insert = prepare(CrimeSql.INSERT);
+            bindInsert(insert, crime);
+            return insert.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean updateCrime(Crime crime, int fields) {
+        if ((fields & Crime.ALL_FIELDS) == 0) {
+            return false;
+        }
+        try {
+            PreparedStatement update = prepare(CrimeSql.updateSql(fields));
+            bindUpdate(update, crime, fields);
+            return update.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean setCrimeSolved(UUID id, boolean solved) {
+        try {
+            PreparedStatement update = prepare(CrimeSql.updateSql(Crime.DIRTY_SOLVED));
+            update.setInt(1, solved ? 1 : 0);
+            update.setBytes(2, UuidBytes.toBytes(id));
+            return update.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean deleteCrime(UUID id) {
+        try {
+            PreparedStatement delete = prepare(CrimeSql.DELETE);
+            delete.setBytes(1, UuidBytes.toBytes(id));
+            return delete.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public List<UUID> insertCrimes(Collection<Crime> crimes) {
+        List<UUID> inserted = new ArrayList<>(crimes.size());
+        inTransaction(() -> {
+            PreparedStatement insert = prepare(CrimeSql.INSERT);
+            for (Crime crime : crimes) {
+                bindInsert(insert, crime);
+                if (insert.executeUpdate() > 0) {
+                    inserted.add(crime.getId());
+                }
+            }
+        });
+        return inserted;
+    }
+
+    @Override
+    public List<UUID> updateCrimes(Collection<Crime> crimes) {
+        List<UUID> updated = new ArrayList<>(crimes.size());
+        inTransaction(() -> {
+            PreparedStatement update = prepare(CrimeSql.UPDATE);
+            for (Crime crime : crimes) {
+                bindUpdate(update, crime, Crime.ALL_FIELDS);
+                if (update.executeUpdate() > 0) {
+                    updated.add(crime.getId());
+                }
+            }
+        });
+        return updated;
+    }
+
+    @Override
+    public List<UUID> deleteCrimes(Collection<UUID> ids) {
+        List<UUID> deleted = new ArrayList<>(ids.size());
+        inTransaction(() -> {
+            PreparedStatement delete = prepare(CrimeSql.DELETE);
+            for (UUID id : ids) {
+                delete.setBytes(1, UuidBytes.toBytes(id));
+                if (delete.executeUpdate() > 0) {
+                    deleted.add(id);
+                }
+            }
+        });
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement statement : mStatements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Closing anyway
+            }
+        }
+        mStatements.clear();
+    }
+
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    private void inTransaction(SqlWork work) {
+        try {
+            mConnection.setAutoCommit(false);
+            try {
+                work.run();
+                mConnection.commit();
+            } catch (SQLException | RuntimeException e) {
+                mConnection.rollback();
+                throw e;
+            } finally {
+                mConnection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = mStatements.get(sql);
+        if (statement == null) {
+            statement = mConnection.prepareStatement(sql);
+            mStatements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    // Columns of CRIME_COLUMNS, in that order
+    private List<Crime> queryCrimes(String sql, Object... args) {
+        List<Crime> crimes = new ArrayList<>();
+        try (ResultSet rows = query(sql, args)) {
+            while (rows.next()) {
+                Crime crime = new Crime(UuidBytes.toUuid(rows.getBytes(2)));
+                crime.setRowId(rows.getLong(1));
+                crime.setTitle(rows.getString(3));
+                crime.setDate(new Date(rows.getLong(4)));
+                crime.setSolved(rows.getInt(5) != 0);
+                crime.setSuspect(rows.getString(6));
+                crime.clearDirtyFields();
+                crimes.add(crime);
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        return crimes;
+    }
+
+    // Rows as CrimeSql.STATS returns them: the totals first, then the types
+    private CrimeStats queryStats(String sql) {
+        CrimeStats stats = new CrimeStats(0, 0);
+        try (ResultSet rows = prepare(sql).executeQuery()) {
+            while (rows.next()) {
+                String type = rows.getString(1);
+                if (type == null) {
+                    stats = new CrimeStats(rows.getInt(2), rows.getInt(3));
+                } else {
+                    stats.addType(type, rows.getInt(2), rows.getInt(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        return stats;
+    }
+
+    private List<CrimeSummary> querySummaries(String sql, Object... args) {
+        List<CrimeSummary> crimes = new ArrayList<>();
+        try (ResultSet rows = query(sql, args)) {
+            while (rows.next()) {
+                crimes.add(readSummary(rows));
+            }
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        return crimes;
+    }
+
+    // Columns of SUMMARY_COLUMNS, in that order
+    private static CrimeSummary readSummary(ResultSet rows) throws SQLException {
+        byte[] uuid = rows.getBytes(2);
+        return new CrimeSummary(rows.getLong(1), UuidBytes.mostSigBits(uuid), UuidBytes.leastSigBits(uuid),
+                rows.getString(3), rows.getLong(4), rows.getInt(5) != 0);
+    }
+
+    private ResultSet query(String sql, Object[] args) throws SQLException {
+        PreparedStatement statement = prepare(sql);
+        for (int i = 0; i < args.length; i++) {
+            statement.setObject(i + 1, args[i]);
+        }
+        return statement.executeQuery();
+    }
+
+    private static void bindInsert(PreparedStatement insert, Crime crime) throws SQLException {
+        insert.setBytes(1, UuidBytes.toBytes(crime.getId()));
+        setStringOrNull(insert, 2, crime.getTitle());
+        insert.setLong(3, crime.getDate().getTime());
+        insert.setInt(4, crime.isSolved() ? 1 : 0);
+        setStringOrNull(insert, 5, crime.getSuspect());
+    }
+
+    // Binds in the column order of CrimeSql.updateSql(fields)
+    private static void bindUpdate(PreparedStatement update, Crime crime, int fields) throws SQLException {
+        int index = 1;
+        if ((fields & Crime.DIRTY_TITLE) != 0) {
+            setStringOrNull(update, index++, crime.getTitle());
+        }
+        if ((fields & Crime.DIRTY_DATE) != 0) {
+            update.setLong(index++, crime.getDate().getTime());
+        }
+        if ((fields & Crime.DIRTY_SOLVED) != 0) {
+            update.setInt(index++, crime.isSolved() ? 1 : 0);
+        }
+        if ((fields & Crime.DIRTY_SUSPECT) != 0) {
+            setStringOrNull(update, index++, crime.getSuspect());
+        }
+        update.setBytes(index, UuidBytes.toBytes(crime.getId()));
+    }
+
+    private static void setStringOrNull(PreparedStatement statement, int index, String value)
+            throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.VARCHAR);
+        } else {
+            statement.setString(index, value);
+        }
+    }
+
+    private static Object[] uuidArgs(Collection<UUID> ids) {
+        Object[] args = new Object[ids.size()];
+        int i = 0;
+        for (UUID id : ids) {
+            args[i++] = UuidBytes.toBytes(id);
+        }
+        return args;
+    }
+
+    private static IllegalStateException failed(SQLException e) {
+        return new IllegalStateException(e.getMessage(), e);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.criminalintent;
+
+import com.example.criminalintent.CrimeMetrics.Op;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Times every call into another CrimeStore under a {@link CrimeMetrics}
+ * operation, with the method name as the slow log detail. Calls that throw
+ * are timed too. Threading is the wrapped store's.
+ */
+public class TimedCrimeStore implements CrimeStore {
+    private final CrimeStore mStore;
+    private final CrimeMetrics mMetrics;
+
+    public TimedCrimeStore(CrimeStore store, CrimeMetrics metrics) {
+        mStore = store;
+        mMetrics = metrics;
+    }
+
+    @Override
+    public long count() {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.count();
+        } finally {
+            mMetrics.end(Op.SCAN, start, "count");
+        }
+    }
+
+    @Override
+    public List<Crime> getCrimes() {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrimes();
+        } finally {
+            mMetrics.end(Op.LIST, start, "getCrimes");
+        }
+    }
+
+    @Override
+    public List<Crime> getCrimes(Collection<UUID> ids) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrimes(ids);
+        } finally {
+            mMetrics.end(Op.GET, start, "getCrimes");
+        }
+    }
+
+    @Override
+    public Crime getCrime(UUID id) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrime(id);
+        } finally {
+            mMetrics.end(Op.GET, start, "getCrime");
+        }
+    }
+
+    @Override
+    public CrimeIdIndex getCrimeIdIndex() {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrimeIdIndex();
+        } finally {
+            mMetrics.end(Op.LIST, start, "getCrimeIdIndex");
+        }
+    }
+
+    @Override
+    public int forEachCrime(long afterRowId, int limit, RowVisitor visitor) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.forEachCrime(afterRowId, limit, visitor);
+        } finally {
+            mMetrics.end(Op.SCAN, start, "forEachCrime");
+        }
+    }
+
+    @Override
+    public CrimePage getCrimePage(CrimeQuery query, CrimePage.Key after, int pageSize) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrimePage(query, after, pageSize);
+        } finally {
+            mMetrics.end(Op.LIST, start, "getCrimePage");
+        }
+    }
+
+    @Override
+    public List<CrimePage> getCrimePages(CrimeQuery query, int pageCount, int pageSize,
+            Set<Integer> materialize) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrimePages(query, pageCount, pageSize, materialize);
+        } finally {
+            mMetrics.end(Op.LIST, start, "getCrimePages");
+        }
+    }
+
+    @Override
+    public List<CrimeSummary> getCrimeSummaries(Collection<UUID> ids) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getCrimeSummaries(ids);
+        } finally {
+            mMetrics.end(Op.GET, start, "getCrimeSummaries");
+        }
+    }
+
+    @Override
+    public List<CrimeSummary> searchCrimes(String query, int limit) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.searchCrimes(query, limit);
+        } finally {
+            mMetrics.end(Op.SEARCH, start, "searchCrimes");
+        }
+    }
+
+    @Override
+    public CrimeStats getStats() {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.getStats();
+        } finally {
+            mMetrics.end(Op.STATS, start, "getStats");
+        }
+    }
+
+    @Override
+    public CrimeStats countStats() {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.countStats();
+        } finally {
+            mMetrics.end(Op.SCAN, start, "countStats");
+        }
+    }
+
+    @Override
+    public void rebuildStats() {
+        long start = CrimeMetrics.start();
+        try {
+            mStore.rebuildStats();
+        } finally {
+            mMetrics.end(Op.SCAN, start, "rebuildStats");
+        }
+    }
+
+    @Override
+    public boolean insertCrime(Crime crime) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.insertCrime(crime);
+        } finally {
+            mMetrics.end(Op.INSERT, start, "insertCrime");
+        }
+    }
+
+    @Override
+    public boolean updateCrime(Crime crime, int fields) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.updateCrime(crime, fields);
+        } finally {
+            mMetrics.end(Op.UPDATE, start, "updateCrime");
+        }
+    }
+
+    @Override
+    public boolean setCrimeSolved(UUID id, boolean solved) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.setCrimeSolved(id, solved);
+        } finally {
+            mMetrics.end(Op.UPDATE, start, "setCrimeSolved");
+        }
+    }
+
+    @Override
+    public boolean deleteCrime(UUID id) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.deleteCrime(id);
+        } finally {
+            mMetrics.end(Op.DELETE, start, "deleteCrime");
+        }
+    }
+
+    @Override
+    public List<UUID> insertCrimes(Collection<Crime> crimes) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.insertCrimes(crimes);
+        } finally {
+            mMetrics.end(Op.INSERT, start, "insertCrimes");
+        }
+    }
+
+    @Override
+    public List<UUID> updateCrimes(Collection<Crime> crimes) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.updateCrimes(crimes);
+        } finally {
+            mMetrics.end(Op.UPDATE, start, "updateCrimes");
+        }
+    }
+
+    @Override
+    public List<UUID> deleteCrimes(Collection<UUID> ids) {
+        long start = CrimeMetrics.start();
+        try {
+            return mStore.deleteCrimes(ids);
+        } finally {
+            mMetrics.end(Op.DELETE, start, "deleteCrimes");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.criminalintent;
+
+import java.util.UUID;
+
+/**
+ * The 16-byte form of a crime UUID stored in the uuid column: the most
+ * significant long first, both big-endian. Less than half the 36-character
+ * string, and turning it back into a UUID is two longs instead of a parse.
+ */
+public final class UuidBytes {
+    public static final int SIZE = 16;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UuidBytes() {
+    }
+
+    public static byte[] toBytes(UUID id) {
+        byte[] bytes = new byte[SIZE];
+        putLong(bytes, 0, id.getMostSignificantBits());
+        putLong(bytes, 8, id.getLeastSignificantBits());
+        return bytes;
+    }
+
+    public static UUID toUuid(byte[] bytes) {
+        return new UUID(mostSigBits(bytes), leastSigBits(bytes));
+    }
+
+    public static long mostSigBits(byte[] bytes) {
+        return getLong(bytes, 0);
+    }
+
+    public static long leastSigBits(byte[] bytes) {
+        return getLong(bytes, 8);
+    }
+
+    /**
+     * The id as an SQL blob literal, X'...'. SQLiteDatabase.query only binds
+     * strings, which never equal a blob, so reads by uuid inline it instead.
+     */
+    public static String toSqlLiteral(UUID id) {
+        char[] literal = new char[SIZE * 2 + 3];
+        literal[0] = 'X';
+        literal[1] = '\'';
+        putHex(literal, 2, id.getMostSignificantBits());
+        putHex(literal, 18, id.getLeastSignificantBits());
+        literal[literal.length - 1] = '\'';
+        return new String(literal);
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void putHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
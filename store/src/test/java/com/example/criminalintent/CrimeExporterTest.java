@@ -0,0 +1,129 @@
+package com.example.criminalintent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+public class CrimeExporterTest {
+    private Connection mConnection;
+    private JdbcCrimeStore mStore;
+
+    @Before
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        JdbcCrimeStore.createSchema(mConnection);
+        mStore = new JdbcCrimeStore(mConnection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+    }
+
+    @Test
+    public void csvQuotesText() throws IOException {
+        Crime crime = crime("Fraud - \"Bank\", Main St", null, 0);
+        crime.setSolved(true);
+        mStore.insertCrime(crime);
+
+        String csv = export(new CrimeExporter(CrimeExporter.Format.CSV));
+        long rowId = mStore.getCrime(crime.getId()).getRowId();
+        assertEquals("id,uuid,title,date,solved,suspect\r\n" +
+                rowId + "," + crime.getId() + ",\"Fraud - \"\"Bank\"\", Main St\"," +
+                "1970-01-01T00:00:00.000Z,true,\r\n", csv);
+    }
+
+    @Test
+    public void jsonEscapesText() throws IOException {
+        Crime crime = crime("Line\nbreak \\ \u00e9\u20ac\ud83d\ude93", "Tab\tcontrol\u0001", 1_700_000_000_123L);
+        mStore.insertCrime(crime);
+
+        String json = export(new CrimeExporter(CrimeExporter.Format.JSON));
+        long rowId = mStore.getCrime(crime.getId()).getRowId();
+        assertEquals("[\n{\"id\":" + rowId + ",\"uuid\":\"" + crime.getId() + "\"," +
+                "\"title\":\"Line\\nbreak \\\\ \u00e9\u20ac\ud83d\ude93\"," +
+                "\"date\":\"2023-11-14T22:13:20.123Z\",\"solved\":false," +
+                "\"suspect\":\"Tab\\tcontrol\\u0001\"}\n]\n", json);
+    }
+
+    @Test
+    public void emptyStoreExportsHeaderOnly() throws IOException {
+        assertEquals("id,uuid,title,date,solved,suspect\r\n", export(new CrimeExporter(CrimeExporter.Format.CSV)));
+        assertEquals("[]\n", export(new CrimeExporter(CrimeExporter.Format.JSON)));
+    }
+
+    @Test
+    public void chunksReportProgressAndCoverEveryRow() throws IOException {
+        List<Crime> crimes = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            crimes.add(crime("Theft - " + i, i % 2 == 0 ? null : "Suspect " + i, i * 1000L));
+        }
+        mStore.insertCrimes(crimes);
+
+        List<Long> progress = new ArrayList<>();
+        CrimeExporter exporter = new CrimeExporter(CrimeExporter.Format.CSV, 100, 0);
+        exporter.setProgressListener((rows, totalRows, bytes) -> {
+            assertEquals(250, totalRows);
+            progress.add(rows);
+        });
+        String csv = export(exporter);
+
+        assertEquals(Arrays.asList(100L, 200L, 250L), progress);
+        assertEquals(251, csv.split("\r\n").length);
+        assertEquals(csv.getBytes(StandardCharsets.UTF_8).length, exporter.getBytesWritten());
+    }
+
+    @Test
+    public void cancelStopsAtTheNextChunk() {
+        List<Crime> crimes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            crimes.add(crime("Arson - " + i, null, i));
+        }
+        mStore.insertCrimes(crimes);
+
+        CrimeExporter exporter = new CrimeExporter(CrimeExporter.Format.JSON, 10, 0);
+        exporter.setProgressListener((rows, totalRows, bytes) -> {
+            if (rows == 20) {
+                exporter.cancel();
+            }
+        });
+        try {
+            export(exporter);
+            fail("Expected the export to be cancelled");
+        } catch (CancellationException expected) {
+            assertTrue(exporter.isCancelled());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private String export(CrimeExporter exporter) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(mStore, Channels.newChannel(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Crime crime(String title, String suspect, long date) {
+        Crime crime = new Crime();
+        crime.setTitle(title);
+        crime.setSuspect(suspect);
+        crime.setDate(new Date(date));
+        return crime;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.criminalintent;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CrimeIdIndexTest {
+    @Test
+    public void findsPositionsByUuidAndRowId() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        CrimeIdIndex index = new CrimeIdIndex(2);
+        index.add(7, first);
+        index.add(3, second);
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.indexOf(second));
+        assertEquals(0, index.indexOfRowId(7));
+        assertEquals(first, index.getId(0));
+        assertEquals(-1, index.indexOf(UUID.randomUUID()));
+        assertEquals(-1, index.indexOf(null));
+    }
+
+    @Test
+    public void removeShiftsLaterPositions() {
+        UUID[] ids = { UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID() };
+        CrimeIdIndex index = new CrimeIdIndex(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            index.add(i + 1, ids[i]);
+        }
+
+        index.remove(1);
+
+        assertEquals(2, index.size());
+        assertEquals(ids[2], index.getId(1));
+        assertEquals(3, index.getRowId(1));
+        assertEquals(-1, index.indexOf(ids[1]));
+        assertEquals(-1, index.indexOfRowId(2));
+        assertEquals(1, index.indexOfRowId(3));
+    }
+
+    @Test
+    public void lookupsFindEveryCrimeOfALargeIndex() {
+        int size = 10_000;
+        UUID[] ids = new UUID[size];
+        CrimeIdIndex index = new CrimeIdIndex(size);
+        for (int i = 0; i < size; i++) {
+            ids[i] = UUID.randomUUID();
+            index.add(size - i, ids[i]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(i, index.indexOf(ids[i]));
+            assertEquals(i, index.indexOfRowId(size - i));
+        }
+        assertEquals(-1, index.indexOfRowId(0));
+        assertEquals(-1, index.indexOfRowId(size + 1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.criminalintent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrimeListSnapshotTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrips() throws IOException {
+        File file = new File(mFolder.getRoot(), "list.snapshot");
+        List<CrimeSummary> crimes = Arrays.asList(
+                new CrimeSummary(7, 1, -2, "Burglary - Caf\u00e9 \ud83d\ude93", 3000, true),
+                new CrimeSummary(3, Long.MIN_VALUE, Long.MAX_VALUE, null, 1000, false),
+                new CrimeSummary(9, 5, 6, "", 1000, false));
+        CrimeListSnapshot.write(file, new CrimePage(crimes, CrimePage.Key.of(crimes.get(2))));
+
+        CrimePage read = CrimeListSnapshot.read(file);
+        assertEquals(crimes, read.getCrimes());
+        assertEquals(9, read.getNextKey().getRowId());
+        assertEquals(1000, read.getNextKey().getDate());
+
+        CrimeListSnapshot.write(file, new CrimePage(crimes.subList(0, 1), null));
+        read = CrimeListSnapshot.read(file);
+        assertEquals(crimes.subList(0, 1), read.getCrimes());
+        assertNull(read.getNextKey());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void missingSnapshotReadsAsNull() {
+        assertNull(CrimeListSnapshot.read(new File(mFolder.getRoot(), "none")));
+    }
+
+    @Test
+    public void corruptSnapshotIsDiscarded() throws IOException {
+        File file = writeSample();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write(raf.read() ^ 1);
+        }
+        assertNull(CrimeListSnapshot.read(file));
+        assertFalse(file.exists());
+
+        file = writeSample();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        assertNull(CrimeListSnapshot.read(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void impossibleRowCountIsDiscarded() throws IOException {
+        File file = writeSample();
+        // The count is outside the CRC; sizing a list by it would run out of memory
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        assertNull(CrimeListSnapshot.read(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void otherVersionIsDiscarded() throws IOException {
+        File file = writeSample();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(CrimeListSnapshot.VERSION + 1);
+        }
+        assertNull(CrimeListSnapshot.read(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void emptyListRoundTrips() throws IOException {
+        File file = new File(mFolder.getRoot(), "empty.snapshot");
+        CrimeListSnapshot.write(file, new CrimePage(Collections.emptyList(), null));
+        assertTrue(CrimeListSnapshot.read(file).getCrimes().isEmpty());
+    }
+
+    private File writeSample() throws IOException {
+        File file = new File(mFolder.getRoot(), "sample.snapshot");
+        List<CrimeSummary> crimes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            crimes.add(new CrimeSummary(i + 1, i, -i, "Theft - " + i, 100_000 - i, i % 3 == 0));
+        }
+        CrimeListSnapshot.write(file, new CrimePage(crimes, null));
+        return file;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.criminalintent;
+
+import com.example.criminalintent.CrimeMetrics.Op;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrimeMetricsTest {
+    @Test
+    public void bucketsArePowersOfTwo() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(1, LatencyHistogram.bucket(1));
+        assertEquals(2, LatencyHistogram.bucket(3));
+        assertEquals(11, LatencyHistogram.bucket(1024));
+        assertEquals(63, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMaxNanos());
+        assertEquals((90 * 1000L + 10 * 1_000_000L) / 100, snapshot.getMeanNanos());
+        // 1000 ns is in [512, 1024), reported as 1023
+        assertEquals(1023, snapshot.getPercentileNanos(0.5));
+        assertEquals(1023, snapshot.getPercentileNanos(0.9));
+        // Capped at the maximum instead of the bucket's 1048575
+        assertEquals(1_000_000, snapshot.getPercentileNanos(0.99));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(0.5));
+    }
+
+    @Test
+    public void slowOpsAreLoggedAndCounted() {
+        CrimeMetrics metrics = new CrimeMetrics(5);
+        List<CrimeMetrics.SlowOp> heard = new ArrayList<>();
+        metrics.setSlowOpListener(heard::add);
+
+        metrics.end(Op.GET, CrimeMetrics.start(), "getCrime");
+        // Started 10 ms ago as far as the clock is concerned
+        metrics.end(Op.LIST, System.nanoTime() - 10_000_000L, "getCrimes");
+
+        assertEquals(1, metrics.getSnapshot(Op.GET).getCount());
+        assertEquals(0, metrics.getSlowCount(Op.GET));
+        assertEquals(1, metrics.getSlowCount(Op.LIST));
+        assertEquals(1, heard.size());
+        assertEquals(Op.LIST, heard.get(0).getOp());
+        assertEquals("getCrimes", heard.get(0).getDetail());
+        assertTrue(heard.get(0).getNanos() >= 10_000_000L);
+        assertEquals(heard, metrics.getSlowOps());
+
+        StringWriter text = new StringWriter();
+        metrics.dump("", new PrintWriter(text));
+        assertTrue(text.toString(), text.toString().contains("LIST"));
+        assertTrue(text.toString(), text.toString().contains("LIST getCrimes took"));
+        assertFalse(text.toString(), text.toString().contains("SEARCH"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getSnapshot(Op.LIST).getCount());
+        assertTrue(metrics.getSlowOps().isEmpty());
+    }
+
+    @Test
+    public void slowLogKeepsTheMostRecent() {
+        CrimeMetrics metrics = new CrimeMetrics(0);
+        for (int i = 0; i < 100; i++) {
+            metrics.end(Op.INSERT, CrimeMetrics.start(), i);
+        }
+        List<CrimeMetrics.SlowOp> slowOps = metrics.getSlowOps();
+        assertEquals(32, slowOps.size());
+        assertEquals("99", slowOps.get(slowOps.size() - 1).getDetail());
+        assertEquals(100, metrics.getSlowCount(Op.INSERT));
+    }
+
+    @Test
+    public void timedStoreRecordsEachCall() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            JdbcCrimeStore.createSchema(connection);
+            JdbcCrimeStore jdbcStore = new JdbcCrimeStore(connection);
+            CrimeMetrics metrics = new CrimeMetrics(1000);
+            CrimeStore store = new TimedCrimeStore(jdbcStore, metrics);
+
+            Crime crime = new Crime();
+            crime.setTitle("Theft - Park");
+            crime.setDate(new Date(1000));
+            assertTrue(store.insertCrime(crime));
+            assertNotNull(store.getCrime(crime.getId()));
+            assertEquals(1, store.getCrimePage(CrimeQuery.DEFAULT, null, 10).size());
+            assertTrue(store.setCrimeSolved(crime.getId(), true));
+            assertEquals(1, store.deleteCrimes(Collections.singletonList(crime.getId())).size());
+
+            assertEquals(1, metrics.getSnapshot(Op.INSERT).getCount());
+            assertEquals(1, metrics.getSnapshot(Op.GET).getCount());
+            assertEquals(1, metrics.getSnapshot(Op.LIST).getCount());
+            assertEquals(1, metrics.getSnapshot(Op.UPDATE).getCount());
+            assertEquals(1, metrics.getSnapshot(Op.DELETE).getCount());
+            assertEquals(0, metrics.getSnapshot(Op.SEARCH).getCount());
+            jdbcStore.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.criminalintent;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CrimeQueryTest {
+    private static final String[] TITLES = {null, "Arson", "Burglary", "Burglary", "Theft", ""};
+    private static final String[] SUSPECTS = {null, "Jane Smith", "John Doe"};
+
+    private Connection mConnection;
+    private JdbcCrimeStore mStore;
+
+    @Before
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        JdbcCrimeStore.createSchema(mConnection);
+        mStore = new JdbcCrimeStore(mConnection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+    }
+
+    @Test
+    public void pagesMatchTheFullOrderForEveryQuery() {
+        // Few distinct titles and dates, so keys often tie and fall back to _id
+        Random random = new Random(7);
+        Map<Long, Crime> byRowId = new HashMap<>();
+        List<Crime> crimes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Crime crime = new Crime();
+            crime.setTitle(TITLES[random.nextInt(TITLES.length)]);
+            crime.setSuspect(SUSPECTS[random.nextInt(SUSPECTS.length)]);
+            crime.setDate(new Date(random.nextInt(40) * 1000L));
+            crime.setSolved(random.nextBoolean());
+            crimes.add(crime);
+        }
+        mStore.insertCrimes(crimes);
+        for (Crime crime : crimes) {
+            Crime read = mStore.getCrime(crime.getId());
+            byRowId.put(read.getRowId(), read);
+        }
+
+        for (CrimeQuery query : allQueries(10_000, 30_000, "Jane Smith")) {
+            List<Long> expected = new ArrayList<>();
+            for (Crime crime : byRowId.values()) {
+                if (matches(query, crime)) {
+                    expected.add(crime.getRowId());
+                }
+            }
+            expected.sort(order(query, byRowId));
+
+            List<Long> paged = new ArrayList<>();
+            CrimePage page = mStore.getCrimePage(query, null, 7);
+            while (true) {
+                for (CrimeSummary crime : page.getCrimes()) {
+                    paged.add(crime.getRowId());
+                }
+                if (page.getNextKey() == null) {
+                    break;
+                }
+                page = mStore.getCrimePage(query, page.getNextKey(), 7);
+            }
+            assertEquals(query.toString(), expected, paged);
+
+            List<Long> bulk = new ArrayList<>();
+            for (CrimePage reloaded : mStore.getCrimePages(query, 100, 7, Collections.emptySet())) {
+                if (reloaded.getNextKey() == null) {
+                    break;
+                }
+                bulk.add(reloaded.getNextKey().getRowId());
+            }
+            for (int i = 0; i < bulk.size(); i++) {
+                assertEquals(query.toString(), paged.get(i * 7 + 6), bulk.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void everyQueryReadsThroughAnIndex() throws SQLException {
+        CrimePage.Key[] keys = {
+                null,
+                new CrimePage.Key(5000, "Burglary", 3),
+                new CrimePage.Key(5000, null, 3)
+        };
+        for (CrimeQuery query : allQueries(10_000, 30_000, "Jane Smith")) {
+            boolean titleNarrowed = query.getSort() == CrimeQuery.Sort.TITLE
+                    && (query.hasDateRange() || query.getSuspect() != null);
+            for (CrimePage.Key key : keys) {
+                for (CrimeSql.Where where : CrimeSql.listWhere(query, key)) {
+                    List<String> plan = explain(CrimeSql.select(CrimeTable.SUMMARY_COLUMNS,
+                            where.getSql(), CrimeSql.orderBy(query), 50), where.getArgs());
+                    for (String step : plan) {
+                        if (step.startsWith("SCAN") || step.startsWith("SEARCH")) {
+                            assertTrue(query + " " + plan, step.contains(" USING "));
+                        }
+                        // Only a title sort under a narrower filter may sort what that filter found
+                        if (step.contains("TEMP B-TREE")) {
+                            assertTrue(query + " " + plan, titleNarrowed);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsPositionFollowsTheSortAndFilters() {
+        CrimeSummary before = new CrimeSummary(1, 0, 1, "Theft", 1000, false);
+        CrimeSummary retitled = new CrimeSummary(1, 0, 1, "Arson", 1000, false);
+        CrimeSummary solved = new CrimeSummary(1, 0, 1, "Theft", 1000, true);
+        CrimeSummary redated = new CrimeSummary(1, 0, 1, "Theft", 2000, false);
+
+        CrimeQuery byTitle = CrimeQuery.DEFAULT.buildUpon().sortBy(CrimeQuery.Sort.TITLE, true).build();
+        CrimeQuery unsolved = CrimeQuery.DEFAULT.buildUpon().solved(CrimeQuery.SolvedFilter.UNSOLVED).build();
+        assertTrue(CrimeQuery.DEFAULT.keepsPosition(before, retitled));
+        assertTrue(CrimeQuery.DEFAULT.keepsPosition(before, solved));
+        assertFalse(CrimeQuery.DEFAULT.keepsPosition(before, redated));
+        assertFalse(byTitle.keepsPosition(before, retitled));
+        assertFalse(unsolved.keepsPosition(before, solved));
+        assertFalse(CrimeQuery.DEFAULT.buildUpon().suspect("Jane Smith").build().keepsPosition(before, before));
+        assertNull(CrimeQuery.DEFAULT.buildUpon().suspect("  ").build().getSuspect());
+    }
+
+    // Every sort, direction and combination of filters
+    private static List<CrimeQuery> allQueries(long fromDate, long toDate, String suspect) {
+        List<CrimeQuery> queries = new ArrayList<>();
+        for (CrimeQuery.Sort sort : CrimeQuery.Sort.values()) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                for (CrimeQuery.SolvedFilter solved : CrimeQuery.SolvedFilter.values()) {
+                    for (boolean dated : new boolean[] {false, true}) {
+                        for (String bySuspect : Arrays.asList(null, suspect)) {
+                            CrimeQuery.Builder query = new CrimeQuery.Builder()
+                                    .sortBy(sort, ascending).solved(solved).suspect(bySuspect);
+                            if (dated) {
+                                query.dateRange(fromDate, toDate);
+                            }
+                            queries.add(query.build());
+                        }
+                    }
+                }
+            }
+        }
+        return queries;
+    }
+
+    private static boolean matches(CrimeQuery query, Crime crime) {
+        long date = crime.getDate().getTime();
+        return (query.getSolved() == CrimeQuery.SolvedFilter.ANY
+                        || crime.isSolved() == (query.getSolved() == CrimeQuery.SolvedFilter.SOLVED))
+                && date >= query.getFromDate() && date < query.getToDate()
+                && (query.getSuspect() == null || query.getSuspect().equals(crime.getSuspect()));
+    }
+
+    // The order SQLite gives the same query: NULL titles lowest, then _id
+    private static Comparator<Long> order(CrimeQuery query, Map<Long, Crime> byRowId) {
+        Comparator<Long> order;
+        if (query.getSort() == CrimeQuery.Sort.TITLE) {
+            order = Comparator.comparing(rowId -> byRowId.get(rowId).getTitle(),
+                    Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        } else {
+            order = Comparator.comparing(rowId -> byRowId.get(rowId).getDate().getTime());
+        }
+        order = order.thenComparing(Comparator.naturalOrder());
+        return query.isAscending() ? order : order.reversed();
+    }
+
+    private List<String> explain(String sql, Object[] args) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement statement = mConnection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    plan.add(rows.getString(4));
+                }
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.criminalintent;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class CrimeTest {
+    @Test
+    public void settingSameValueLeavesCrimeClean() {
+        Crime crime = new Crime();
+        crime.setTitle("Burglary");
+        crime.setSuspect(null);
+        crime.clearDirtyFields();
+
+        crime.setTitle("Burglary");
+        crime.setSuspect(null);
+        crime.setSolved(false);
+        crime.setDate(new Date(crime.getDate().getTime()));
+
+        assertFalse(crime.isDirty());
+    }
+
+    @Test
+    public void eachSetterMarksItsOwnField() {
+        Crime crime = new Crime();
+        crime.clearDirtyFields();
+
+        crime.setTitle("Arson");
+        assertEquals(Crime.DIRTY_TITLE, crime.getDirtyFields());
+
+        crime.setSolved(true);
+        crime.setSuspect("Jane Smith");
+        assertEquals(Crime.DIRTY_TITLE | Crime.DIRTY_SOLVED | Crime.DIRTY_SUSPECT,
+                crime.getDirtyFields());
+
+        crime.setDate(new Date(0));
+        assertEquals(Crime.DIRTY_TITLE | Crime.DIRTY_DATE | Crime.DIRTY_SOLVED | Crime.DIRTY_SUSPECT,
+                crime.getDirtyFields());
+
+        crime.clearDirtyFields();
+        assertFalse(crime.isDirty());
+    }
+
+    @Test
+    public void committedWriteKeepsLaterEdits() {
+        Crime crime = new Crime();
+        crime.clearDirtyFields();
+        crime.setTitle("Arson");
+        crime.setSolved(true);
+        Crime written = crime.copy();
+
+        // Edited again while the write was in flight
+        crime.setTitle("Arson - Warehouse");
+        crime.clearWrittenFields(written, written.getDirtyFields());
+        assertEquals(Crime.DIRTY_TITLE, crime.getDirtyFields());
+
+        crime.clearWrittenFields(crime.copy(), Crime.ALL_FIELDS);
+        assertFalse(crime.isDirty());
+    }
+
+    @Test
+    public void failedWriteRestoresItsFields() {
+        Crime crime = new Crime();
+        crime.clearDirtyFields();
+        crime.setTitle("Arson");
+        int written = crime.getDirtyFields();
+        crime.clearDirtyFields();
+
+        // Edited again before the write failed
+        crime.setSolved(true);
+        crime.markDirtyFields(written);
+        assertEquals(Crime.DIRTY_TITLE | Crime.DIRTY_SOLVED, crime.getDirtyFields());
+    }
+}
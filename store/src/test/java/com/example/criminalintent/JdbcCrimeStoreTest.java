@@ -0,0 +1,168 @@
+package com.example.criminalintent;
+
+import com.example.criminalintent.CrimeDbSchema.CrimeTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class JdbcCrimeStoreTest {
+    private Connection mConnection;
+    private JdbcCrimeStore mStore;
+
+    @Before
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        JdbcCrimeStore.createSchema(mConnection);
+        mStore = new JdbcCrimeStore(mConnection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+    }
+
+    @Test
+    public void insertThenRead() {
+        Crime crime = crime("Burglary - Bank", "Jane Smith", 1000);
+        crime.setSolved(true);
+        assertTrue(mStore.insertCrime(crime));
+
+        Crime read = mStore.getCrime(crime.getId());
+        assertNotNull(read);
+        assertTrue(read.getRowId() > 0);
+        assertEquals("Burglary - Bank", read.getTitle());
+        assertEquals("Jane Smith", read.getSuspect());
+        assertEquals(1000, read.getDate().getTime());
+        assertTrue(read.isSolved());
+        assertFalse(read.isDirty());
+        assertNull(mStore.getCrime(UUID.randomUUID()));
+    }
+
+    @Test
+    public void updateWritesOnlyTheGivenFields() {
+        Crime crime = crime("Theft - Park", "John Doe", 1000);
+        mStore.insertCrime(crime);
+
+        crime.setTitle("Arson - Park");
+        crime.setSuspect("Tom Miller");
+        assertTrue(mStore.updateCrime(crime, Crime.DIRTY_TITLE));
+
+        Crime read = mStore.getCrime(crime.getId());
+        assertEquals("Arson - Park", read.getTitle());
+        assertEquals("John Doe", read.getSuspect());
+    }
+
+    @Test
+    public void pagesFollowListOrder() {
+        mStore.insertCrimes(Arrays.asList(
+                crime("a", null, 3000), crime("b", null, 1000), crime("c", null, 2000)));
+
+        CrimePage first = mStore.getCrimePage(CrimeQuery.DEFAULT, null, 2);
+        assertEquals("a", first.getCrimes().get(0).getTitle());
+        assertEquals("c", first.getCrimes().get(1).getTitle());
+        CrimePage second = mStore.getCrimePage(CrimeQuery.DEFAULT, first.getNextKey(), 2);
+        assertEquals(1, second.size());
+        assertEquals("b", second.getCrimes().get(0).getTitle());
+        assertNull(second.getNextKey());
+
+        CrimeIdIndex index = mStore.getCrimeIdIndex();
+        assertEquals(3, index.size());
+        assertEquals(first.getCrimes().get(0).getRowId(), index.getRowId(0));
+    }
+
+    @Test
+    public void searchRanksTitleMatchesFirst() {
+        Crime bySuspect = crime("Fraud - Bank", "Dave Burton", 2000);
+        Crime byTitle = crime("Burglary - Hotel", "Amy Garcia", 1000);
+        mStore.insertCrimes(Arrays.asList(bySuspect, byTitle));
+
+        List<CrimeSummary> results = mStore.searchCrimes("bur", 10);
+        assertEquals(2, results.size());
+        assertEquals(byTitle.getId(), results.get(0).getId());
+        assertEquals(bySuspect.getId(), results.get(1).getId());
+        assertTrue(mStore.searchCrimes("  *  ", 10).isEmpty());
+    }
+
+    @Test
+    public void searchTreatsOperatorsAsWords() {
+        mStore.insertCrimes(Arrays.asList(crime("Theft - Park", null, 1000),
+                crime("Fraud - Bank", null, 2000)));
+
+        // Unquoted, OR would match both crimes and NOT would exclude one
+        assertTrue(mStore.searchCrimes("Theft OR Bank", 10).isEmpty());
+        assertTrue(mStore.searchCrimes("Theft NOT Park", 10).isEmpty());
+        assertEquals(1, mStore.searchCrimes("THEFT park", 10).size());
+        assertArrayEquals(new String[] { "title:theft* title:or*", "\"theft*\" \"or*\"" },
+                CrimeSql.searchArgs("Theft OR"));
+    }
+
+    @Test
+    public void bulkWritesReturnTheRowsTouched() {
+        Crime kept = crime("Theft - Bank", null, 1000);
+        Crime removed = crime("Theft - Park", null, 2000);
+        assertEquals(2, mStore.insertCrimes(Arrays.asList(kept, removed)).size());
+
+        UUID missing = UUID.randomUUID();
+        List<UUID> deleted = mStore.deleteCrimes(Arrays.asList(removed.getId(), missing));
+        assertEquals(Collections.singletonList(removed.getId()), deleted);
+        assertEquals(1, mStore.count());
+        // The search triggers follow deletes
+        assertEquals(1, mStore.searchCrimes("theft", 10).size());
+    }
+
+    @Test
+    public void triggersKeepStatsExact() {
+        Crime burglary = crime("Burglary - Bank", null, 1000);
+        Crime arson = crime("Arson - Park", null, 2000);
+        Crime untitled = crime(null, null, 3000);
+        mStore.insertCrimes(Arrays.asList(burglary, arson, untitled));
+
+        mStore.setCrimeSolved(burglary.getId(), true);
+        arson.setTitle("Burglary - Hotel");
+        mStore.updateCrime(arson, Crime.DIRTY_TITLE);
+        mStore.deleteCrime(untitled.getId());
+
+        CrimeStats stats = mStore.getStats();
+        assertEquals(2, stats.getTotal());
+        assertEquals(1, stats.getSolved());
+        assertEquals(new CrimeStats.TypeCount("Burglary", 2, 1), stats.getType("Burglary"));
+        assertNull(stats.getType("Arson"));
+        assertNull(stats.getType(""));
+        assertEquals(mStore.countStats(), stats);
+    }
+
+    @Test
+    public void rebuildRestoresDriftedStats() throws SQLException {
+        mStore.insertCrimes(Arrays.asList(crime("Fraud - Bank", null, 1000), crime("Fraud", null, 2000)));
+        try (Statement statement = mConnection.createStatement()) {
+            statement.execute("UPDATE " + CrimeTable.TOTALS_NAME + " SET total = 7");
+        }
+        assertNotEquals(mStore.countStats(), mStore.getStats());
+
+        mStore.rebuildStats();
+        assertEquals(mStore.countStats(), mStore.getStats());
+        assertEquals(2, mStore.getStats().getType("Fraud").getTotal());
+    }
+
+    private static Crime crime(String title, String suspect, long date) {
+        Crime crime = new Crime();
+        crime.setTitle(title);
+        crime.setSuspect(suspect);
+        crime.setDate(new Date(date));
+        return crime;
+    }
+}
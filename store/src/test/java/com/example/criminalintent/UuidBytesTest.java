@@ -0,0 +1,41 @@
+package com.example.criminalintent;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class UuidBytesTest {
+    @Test
+    public void roundTrips() {
+        for (int i = 0; i < 1000; i++) {
+            UUID id = UUID.randomUUID();
+            byte[] bytes = UuidBytes.toBytes(id);
+            assertEquals(UuidBytes.SIZE, bytes.length);
+            assertEquals(id, UuidBytes.toUuid(bytes));
+        }
+        UUID extremes = new UUID(-1L, Long.MIN_VALUE);
+        assertEquals(extremes, UuidBytes.toUuid(UuidBytes.toBytes(extremes)));
+    }
+
+    @Test
+    public void bytesAreTheHexDigitsInOrder() {
+        UUID id = UUID.fromString("01234567-89ab-cdef-fedc-ba9876543210");
+        byte[] bytes = UuidBytes.toBytes(id);
+        assertEquals(0x01, bytes[0]);
+        assertEquals((byte) 0xef, bytes[7]);
+        assertEquals((byte) 0xfe, bytes[8]);
+        assertEquals(0x10, bytes[15]);
+        assertEquals("X'0123456789ABCDEFFEDCBA9876543210'", UuidBytes.toSqlLiteral(id));
+    }
+
+    @Test
+    public void photoFilenameIsBuiltOnDemand() {
+        UUID id = UUID.randomUUID();
+        Crime crime = new Crime(id);
+        assertEquals("IMG_" + id + ".jpg", crime.getPhotoFilename());
+        crime.setPhotoFilename("other.jpg");
+        assertEquals("other.jpg", crime.copy().getPhotoFilename());
+    }
+}